@@ -0,0 +1,188 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Minimal JMH-style harness: timed warmup and measurement iterations, ns/op,
+// allocation per op from the thread MX bean, GC counts, JSON output.
+public class BenchmarkRunner {
+    public interface Op {
+        long run(); // result is consumed so the JIT can't drop the work
+    }
+
+    public static class Result {
+        final String name;
+        final Map<String, Object> params;
+        final double nsPerOp;
+        final double nsPerOpError;
+        final double bytesPerOp;
+        final double allocMbPerSec;
+        final long gcCount;
+        final long gcTimeMs;
+        final long ops;
+
+        Result(String name, Map<String, Object> params, double nsPerOp, double nsPerOpError, double bytesPerOp,
+               double allocMbPerSec, long gcCount, long gcTimeMs, long ops) {
+            this.name = name;
+            this.params = params;
+            this.nsPerOp = nsPerOp;
+            this.nsPerOpError = nsPerOpError;
+            this.bytesPerOp = bytesPerOp;
+            this.allocMbPerSec = allocMbPerSec;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.ops = ops;
+        }
+
+        String key() {
+            return name + params;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+    private long sink;
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.filter = filter;
+    }
+
+    public boolean accepts(String name) {
+        return filter == null || name.contains(filter);
+    }
+
+    public void run(String name, Map<String, Object> params, Op op) {
+        if (!accepts(name)) return;
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+        double[] samples = new double[measurementIterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        for (int i = 0; i < measurementIterations; i++) {
+            long bytesBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long[] iteration = iteration(op);
+            totalBytes += THREADS.getCurrentThreadAllocatedBytes() - bytesBefore;
+            totalOps += iteration[0];
+            totalNanos += iteration[1];
+            samples[i] = (double) iteration[1] / iteration[0];
+        }
+        double mean = (double) totalNanos / totalOps;
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        double error = samples.length > 1 ? Math.sqrt(variance / (samples.length - 1)) : 0;
+        double allocRate = totalBytes / (totalNanos / 1e9) / (1024 * 1024);
+        Result result = new Result(name, params, mean, error, (double) totalBytes / totalOps, allocRate,
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore, totalOps);
+        results.add(result);
+        System.out.printf("%-28s %-40s %12.1f +- %8.1f ns/op %10.1f B/op %8.1f MB/s gc=%d%n",
+                name, params, result.nsPerOp, result.nsPerOpError, result.bytesPerOp, result.allocMbPerSec,
+                result.gcCount);
+    }
+
+    // Runs op in growing batches until the iteration time is used up; returns {ops, nanos}.
+    private long[] iteration(Op op) {
+        long ops = 0;
+        long batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (long i = 0; i < batch; i++) {
+                sink += op.run();
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+            if (batch < 1 << 20) batch <<= 1;
+        } while (elapsed < iterationNanos);
+        return new long[] {ops, elapsed};
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    public long getSink() {
+        return sink;
+    }
+
+    // One result object per line so a later run can be diffed or parsed line by line.
+    public void writeJson(String file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                StringBuilder sb = new StringBuilder("  {\"benchmark\": \"").append(r.name).append("\", \"params\": {");
+                int p = 0;
+                for (Map.Entry<String, Object> entry : r.params.entrySet()) {
+                    if (p++ > 0) sb.append(", ");
+                    sb.append('"').append(entry.getKey()).append("\": ");
+                    if (entry.getValue() instanceof Number) {
+                        sb.append(entry.getValue());
+                    } else {
+                        sb.append('"').append(entry.getValue()).append('"');
+                    }
+                }
+                sb.append(String.format(Locale.ROOT,
+                        "}, \"nsPerOp\": %.3f, \"nsPerOpError\": %.3f, \"bytesPerOp\": %.3f, \"allocMbPerSec\": %.3f, \"gcCount\": %d, \"gcTimeMs\": %d, \"ops\": %d}",
+                        r.nsPerOp, r.nsPerOpError, r.bytesPerOp, r.allocMbPerSec, r.gcCount, r.gcTimeMs, r.ops));
+                if (i < results.size() - 1) sb.append(',');
+                writer.write(sb.append('\n').toString());
+            }
+            writer.write("]\n");
+        }
+    }
+
+    // Prints ns/op changes against an earlier JSON file; returns the number of regressions.
+    public int compare(String baselineFile, double tolerance) throws IOException {
+        Pattern line = Pattern.compile("\"benchmark\": \"([^\"]+)\", \"params\": \\{([^}]*)}, \"nsPerOp\": ([0-9.]+)");
+        Map<String, Double> baseline = new HashMap<>();
+        for (String text : Files.readAllLines(Paths.get(baselineFile))) {
+            Matcher m = line.matcher(text);
+            if (m.find()) {
+                baseline.put(m.group(1) + "{" + m.group(2).replace("\"", "").replace(": ", "=") + "}",
+                        Double.parseDouble(m.group(3)));
+            }
+        }
+        int regressions = 0;
+        for (Result r : results) {
+            Double before = baseline.get(r.key());
+            if (before == null) continue;
+            double change = (r.nsPerOp - before) / before;
+            boolean regressed = change > tolerance;
+            if (regressed) regressions++;
+            System.out.printf("%-70s %10.1f -> %10.1f ns/op %+7.1f%%%s%n",
+                    r.key(), before, r.nsPerOp, change * 100, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+}
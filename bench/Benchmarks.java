@@ -0,0 +1,545 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Usage: java -cp out Benchmarks [--quick] [--filter name] [--out results.json] [--baseline old.json]
+public class Benchmarks {
+    private static final int[] BOARD_SIZES = {24, 100, 500, 1000};
+    private static final double[] FILL_RATIOS = {0.1, 0.5, 0.9};
+    private static final double[] SPAWN_FILL_RATIOS = {0.5, 0.9, 0.99, 0.999};
+
+    public static void main(String[] args) throws Exception {
+        boolean quick = false;
+        String filter = null;
+        String out = "bench-results.json";
+        String baseline = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--quick": quick = true; break;
+                case "--filter": filter = args[++i]; break;
+                case "--out": out = args[++i]; break;
+                case "--baseline": baseline = args[++i]; break;
+            }
+        }
+        System.setProperty("java.awt.headless", "true");
+        BenchmarkRunner runner = quick
+                ? new BenchmarkRunner(1, 3, 100, filter)
+                : new BenchmarkRunner(3, 5, 500, filter);
+
+        for (int board : BOARD_SIZES) {
+            benchTick(runner, board, 3);
+            for (double fill : FILL_RATIOS) {
+                benchTick(runner, board, (int) (board * board * fill));
+            }
+            for (double fill : SPAWN_FILL_RATIOS) {
+                benchSpawn(runner, board, (int) (board * board * fill));
+            }
+        }
+        for (double fill : new double[] {0, 0.5, 0.9}) {
+            benchDraw(runner, Math.max(3, (int) (576 * fill)));
+            benchRenderTick(runner, Math.max(3, (int) (576 * fill)));
+        }
+        for (int world : new int[] {24, 1000, 10_000}) {
+            benchWorld(runner, world);
+        }
+        benchScorePush(runner);
+        for (int size : new int[] {1_000, 1_000_000}) {
+            benchLeaderboard(runner, size);
+        }
+        benchHeadlessGame(runner, false);
+        benchHeadlessGame(runner, true);
+        benchEventPublish(runner);
+        benchTelemetry(runner, false);
+        benchTelemetry(runner, true);
+        benchInput(runner);
+        benchReplay(runner);
+        for (int size : new int[] {100, 1000, 3000}) {
+            benchLevel(runner, size);
+        }
+        benchSnapshot(runner, 24, 300);
+        for (double fill : new double[] {0.1, 0.9}) {
+            benchSnapshot(runner, 1000, (int) (1000 * 1000 * fill));
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int snakes : new int[] {100, 1000, 10_000}) {
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                benchArena(runner, snakes, threads);
+            }
+            if (Integer.bitCount(cores) != 1) benchArena(runner, snakes, cores);
+        }
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            benchBatchEnv(runner, 4096, threads);
+        }
+        if (Integer.bitCount(cores) != 1) benchBatchEnv(runner, 4096, cores);
+        for (int board : new int[] {24, 100}) {
+            for (double fill : new double[] {0, 0.3, 0.6}) {
+                benchAutopilot(runner, board, Math.max(3, (int) (board * board * fill)));
+            }
+        }
+
+        runner.writeJson(out);
+        System.out.println("Results written to " + out + " (sink " + runner.getSink() + ")");
+        if (baseline != null && runner.compare(baseline, 0.10) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Object> params(int board, int length) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("board", board);
+        params.put("length", length);
+        return params;
+    }
+
+    // Steers the snake around a Hamiltonian cycle so it never dies while the body is long.
+    private static void benchTick(BenchmarkRunner runner, int board, int length) {
+        if (!runner.accepts("tick")) return;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        runner.run("tick", params(board, length), () -> {
+            if (!engine.isRunning()) {
+                fixture.place(engine, length);
+            }
+            engine.setPendingDirection(fixture.next(engine.getHead()));
+            engine.tick();
+            return engine.getHead();
+        });
+    }
+
+    private static void benchSpawn(BenchmarkRunner runner, int board, int length) {
+        if (!runner.accepts("newFood")) return;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        runner.run("newFood", params(board, length), () -> {
+            engine.newFood();
+            return engine.getFood();
+        });
+    }
+
+    private static void benchDraw(BenchmarkRunner runner, int length) throws java.io.IOException {
+        if (!runner.accepts("draw")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        GamePanel panel = new GamePanel(engine, new ScoreStore(tempFile("bench-scores")), v -> {});
+        panel.setSize(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT);
+        BufferedImage image = new BufferedImage(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        runner.run("draw", params(board, length), () -> {
+            Graphics g = image.getGraphics();
+            panel.draw(g);
+            g.dispose();
+            return image.getRGB(0, 0);
+        });
+    }
+
+    // One tick plus the incremental redraw of the cells it changed.
+    private static void benchRenderTick(BenchmarkRunner runner, int length) {
+        if (!runner.accepts("renderTick")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        GameRenderer renderer = new GameRenderer(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT, GamePanel.UNIT_SIZE);
+        Component target = new Canvas();
+        runner.run("renderTick", params(board, length), () -> {
+            if (!engine.isRunning()) {
+                fixture.place(engine, length);
+                renderer.invalidate();
+            }
+            engine.setPendingDirection(fixture.next(engine.getHead()));
+            engine.tick();
+            renderer.update(engine, target);
+            return engine.getHead();
+        });
+    }
+
+    // Tick plus camera-following render on a world of the given size; should not grow with it.
+    private static void benchWorld(BenchmarkRunner runner, int world) {
+        if (!runner.accepts("world")) return;
+        GameEngine engine = new GameEngine(world, world, 100);
+        engine.reset(1);
+        Controller player = new GreedyController();
+        GameRenderer renderer = new GameRenderer(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT, GamePanel.UNIT_SIZE);
+        Component target = new Canvas();
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("world", world);
+        runner.run("world", params, () -> {
+            if (!engine.isRunning()) {
+                engine.reset();
+            }
+            Direction direction = player.nextDirection(engine);
+            if (direction != null) engine.setPendingDirection(direction);
+            engine.tick();
+            renderer.update(engine, target);
+            return engine.getHead();
+        });
+        if (engine.getOccupancy() instanceof ChunkedOccupancy) {
+            ChunkedOccupancy chunks = (ChunkedOccupancy) engine.getOccupancy();
+            System.out.println("  chunks allocated: " + chunks.getAllocatedChunks() + " ("
+                    + chunks.getAllocatedBytes() / 1024 + " KiB)");
+        }
+    }
+
+    // Cost on the game thread only; the writer thread batches the records to disk behind it.
+    private static void benchScorePush(BenchmarkRunner runner) throws java.io.IOException {
+        if (!runner.accepts("scorePush")) return;
+        ScoreStore scores = new ScoreStore(tempFile("bench-scores"));
+        int[] score = {0};
+        runner.run("scorePush", new LinkedHashMap<>(), () -> {
+            scores.push(score[0]++ & 1023, 100);
+            return score[0];
+        });
+        scores.close();
+        System.out.println("  " + scores.getStats());
+    }
+
+    // Record a score, rank it and rebuild the HUD text, with 'size' scores already indexed.
+    private static void benchLeaderboard(BenchmarkRunner runner, int size) {
+        if (!runner.accepts("leaderboard")) return;
+        Leaderboard leaderboard = new Leaderboard();
+        GameRandom random = new GameRandom(7);
+        int[] delays = {GameConfig.DEFAULT.easyDelay, GameConfig.DEFAULT.normalDelay, GameConfig.DEFAULT.hardDelay};
+        for (int i = 0; i < size; i++) {
+            leaderboard.add(random.nextInt(600), delays[random.nextInt(3)]);
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("scores", size);
+        runner.run("leaderboard", params, () -> {
+            int score = random.nextInt(600);
+            leaderboard.add(score, GameConfig.DEFAULT.normalDelay);
+            return leaderboard.rank(score, GameConfig.DEFAULT.normalDelay)
+                    + leaderboard.getHudText(GameConfig.DEFAULT.normalDelay).length();
+        });
+    }
+
+    // A whole greedy-player game per op: 1e9 / ns/op is games per second per core. With
+    // events on, the game publishes to a bus that an EventSink drains to a temp file.
+    private static void benchHeadlessGame(BenchmarkRunner runner, boolean events) {
+        if (!runner.accepts("headlessGame")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        GameEngine engine = new GameEngine(board, board, GameConfig.DEFAULT.normalDelay);
+        Controller player = new GreedyController();
+        EventBus bus = new EventBus(1 << 16);
+        EventSink sink = events ? openSink(bus) : null;
+        if (events) engine.setEventBus(bus);
+        Map<String, Object> params = params(board, 3);
+        params.put("events", events);
+        runner.run("headlessGame", params, () -> BalanceSweep.playGame(engine, player));
+        closeSink(sink, bus);
+    }
+
+    // One event published to a bus with an EventSink draining it to a temp file. A tight
+    // loop publishes faster than the sink writes, so with few cores many of these are the
+    // drop path; headlessGame with events shows the cost in a real game.
+    private static void benchEventPublish(BenchmarkRunner runner) {
+        if (!runner.accepts("eventPublish")) return;
+        EventBus bus = new EventBus(1 << 16);
+        EventSink sink = openSink(bus);
+        long[] tick = {0};
+        runner.run("eventPublish", new LinkedHashMap<>(), () -> {
+            long t = tick[0]++;
+            return bus.publish(EventBus.FOOD_EATEN, 42, t, (int) t & 1023, (int) (t >> 4), 0) ? 1 : 0;
+        });
+        closeSink(sink, bus);
+    }
+
+    private static EventSink openSink(EventBus bus) {
+        try {
+            return new EventSink(Paths.get(tempFile("events")), bus);
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeSink(EventSink sink, EventBus bus) {
+        if (sink == null) return;
+        try {
+            sink.close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        System.out.printf("  events: %d published, %d written, %d dropped%n",
+                bus.getPublished(), sink.getEvents(), bus.getDropped());
+    }
+
+    // One autopilot decision with the body laid along the Hamiltonian cycle.
+    private static void benchAutopilot(BenchmarkRunner runner, int board, int length) {
+        if (!runner.accepts("autopilot")) return;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        Autopilot autopilot = new Autopilot();
+        runner.run("autopilot", params(board, length), () -> {
+            Direction d = autopilot.nextDirection(engine);
+            return d == null ? 0 : d.ordinal();
+        });
+        System.out.println("  decision latency: " + autopilot.getLatency().summary("us", 1000));
+    }
+
+    // A tick as the game loop runs it, with the telemetry probes off and on; off should
+    // cost the same as the plain tick benchmark.
+    private static void benchTelemetry(BenchmarkRunner runner, boolean enabled) {
+        if (!runner.accepts("telemetry")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, 100);
+        Telemetry.setEnabled(enabled);
+        Map<String, Object> params = params(board, 100);
+        params.put("enabled", enabled);
+        runner.run("telemetry", params, () -> {
+            if (Telemetry.enabled) Telemetry.beginTick();
+            if (!engine.isRunning()) {
+                fixture.place(engine, 100);
+            }
+            engine.setPendingDirection(fixture.next(engine.getHead()));
+            engine.tick();
+            if (Telemetry.enabled) Telemetry.endTick();
+            return engine.getHead();
+        });
+        if (enabled) {
+            System.out.println("  " + Telemetry.summaryLines()[0]);
+            System.out.println("  " + Telemetry.summaryLines()[4]);
+        }
+        Telemetry.setEnabled(false);
+        Telemetry.reset();
+    }
+
+    // A tick steered through the input queue, as the game loop does; compare with "tick".
+    private static void benchInput(BenchmarkRunner runner) {
+        if (!runner.accepts("input")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, 100);
+        InputQueue input = new InputQueue(16);
+        runner.run("input", params(board, 100), () -> {
+            if (!engine.isRunning()) {
+                fixture.place(engine, 100);
+            }
+            input.offer(fixture.next(engine.getHead()), System.nanoTime());
+            Direction direction = input.poll(engine);
+            if (direction != null) engine.setPendingDirection(direction);
+            engine.tick();
+            return engine.getHead();
+        });
+    }
+
+    // Re-simulates a recorded autopilot game from its seed; ticks per op over ns/op is the replay speed.
+    private static void benchReplay(BenchmarkRunner runner) throws java.io.IOException {
+        if (!runner.accepts("replay")) return;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        GameEngine engine = new GameEngine(board, board, GameConfig.DEFAULT.normalDelay);
+        ReplayRecorder recorder = new ReplayRecorder();
+        engine.setRecorder(recorder);
+        engine.reset(42);
+        Autopilot player = new Autopilot();
+        while (engine.isRunning() && engine.getTickCount() < 20_000) {
+            Direction direction = player.nextDirection(engine);
+            if (direction != null) engine.setPendingDirection(direction);
+            engine.tick();
+        }
+        String file = tempFile("bench-replay");
+        recorder.save(file);
+        Replay replay = new Replay(new File(file).toPath());
+        long ticks = replay.runToEnd();
+        if (replay.getEngine().getFoodEaten() != engine.getFoodEaten() || ticks != engine.getTickCount()) {
+            throw new IllegalStateException("Replay diverged from the recorded game");
+        }
+        Map<String, Object> params = params(board, 3);
+        params.put("ticks", ticks);
+        params.put("bytes", recorder.size());
+        runner.run("replay", params, () -> {
+            replay.restart();
+            return replay.runToEnd();
+        });
+    }
+
+    // Opening a level file (mapping it plus the wall list and distance field passes), and
+    // a greedy tick on it, which should cost the same as on an open board.
+    private static void benchLevel(BenchmarkRunner runner, int size) throws java.io.IOException {
+        if (!runner.accepts("level")) return;
+        byte[] cells = new byte[size * size];
+        GameRandom random = new GameRandom(size);
+        for (int c = 0; c < cells.length; c++) {
+            if (random.nextInt(20) == 0) cells[c] = Level.WALL;
+        }
+        for (int y = size / 2 - 2; y <= size / 2 + 2; y++) {
+            for (int x = size / 2 - 2; x <= size / 2 + 2; x++) {
+                cells[y * size + x] = Level.SPAWN;
+            }
+        }
+        Path file = Paths.get(tempFile("bench-level"));
+        Level.write(file, size, size, cells);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("size", size);
+        params.put("phase", "open");
+        runner.run("level", params, () -> {
+            try {
+                return Level.open(file).getStartCell();
+            } catch (java.io.IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Level level = Level.open(file);
+        GameEngine engine = new GameEngine(level, 100, GameConfig.DEFAULT);
+        engine.reset(1);
+        Controller player = new GreedyController();
+        params = new LinkedHashMap<>(params);
+        params.put("phase", "tick");
+        params.put("walls", level.getWallCount());
+        runner.run("level", params, () -> {
+            if (!engine.isRunning()) {
+                engine.reset();
+            }
+            Direction direction = player.nextDirection(engine);
+            if (direction != null) engine.setPendingDirection(direction);
+            engine.tick();
+            return engine.getHead();
+        });
+    }
+
+    // Save/resume of a long snake: the tick-thread cost of a checkpoint (capture plus the
+    // next tick, which pays the copy-on-write), the writer's encode, and decode + restore.
+    private static void benchSnapshot(BenchmarkRunner runner, int board, int length) {
+        if (!runner.accepts("snapshot")) return;
+        HamiltonianFixture fixture = new HamiltonianFixture(board);
+        GameEngine engine = new GameEngine(board, board, 100);
+        fixture.place(engine, length);
+        Map<String, Object> params = params(board, length);
+        params.put("phase", "checkpoint");
+        runner.run("snapshot", params, () -> {
+            if (!engine.isRunning()) {
+                fixture.place(engine, length);
+            }
+            GameState state = engine.capture();
+            engine.setPendingDirection(fixture.next(engine.getHead()));
+            engine.tick();
+            return state.getLength();
+        });
+
+        GameState state = engine.capture();
+        ByteBuffer[] buffer = {ByteBuffer.allocateDirect(4096)};
+        params = params(board, length);
+        params.put("phase", "encode");
+        params.put("bytes", state.encodedSize());
+        runner.run("snapshot", params, () -> {
+            buffer[0].clear();
+            buffer[0] = state.encode(buffer[0]);
+            return buffer[0].position();
+        });
+
+        buffer[0].flip();
+        GameEngine resumed = new GameEngine(board, board, 100);
+        params = params(board, length);
+        params.put("phase", "resume");
+        runner.run("snapshot", params, () -> {
+            try {
+                resumed.restore(GameState.decode(buffer[0].duplicate()));
+            } catch (java.io.IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return resumed.getBodyLength();
+        });
+    }
+
+    // One arena tick (propose in parallel, resolve sequentially) on a board with ~2% of
+    // cells per snake, so density stays the same as the snake count grows.
+    private static void benchArena(BenchmarkRunner runner, int snakes, int threads) {
+        if (!runner.accepts("arena")) return;
+        int board = (int) Math.sqrt(snakes * 50.0) + 16;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArenaEngine arena = new ArenaEngine(board, board, snakes, 1, pool);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("snakes", snakes);
+        params.put("threads", threads);
+        params.put("board", board);
+        runner.run("arena", params, () -> {
+            arena.tick();
+            return arena.getAliveCount();
+        });
+        pool.shutdown();
+    }
+
+    // One step of every game in a BatchEnv, writing observations to a direct buffer; games
+    // stepped per second is games * 1e9 / ns per op. A quarter of the actions turn.
+    private static void benchBatchEnv(BenchmarkRunner runner, int games, int threads) {
+        if (!runner.accepts("batchEnv")) return;
+        int board = 12;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        BatchEnv env = new BatchEnv(games, board, board, 1, pool);
+        IntBuffer observations = ByteBuffer.allocateDirect(4 * games * board * board)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        env.setObservationBuffers(observations, null);
+        int[][] actions = new int[64][games];
+        GameRandom random = new GameRandom(2);
+        for (int[] step : actions) {
+            for (int g = 0; g < games; g++) {
+                step[g] = random.nextInt(16) < 4 ? random.nextInt(4) : BatchEnv.KEEP;
+            }
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("games", games);
+        params.put("threads", threads);
+        params.put("board", board);
+        runner.run("batchEnv", params, () -> {
+            env.step(actions[(int) (env.getSteps() & 63)]);
+            return env.getEpisodes();
+        });
+        pool.shutdown();
+    }
+
+    private static String tempFile(String prefix) {
+        try {
+            File file = File.createTempFile(prefix, ".txt");
+            file.deleteOnExit();
+            return file.getPath();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Autopilot's Hamiltonian cycle on an even-sized board, unrolled into visiting order.
+    static class HamiltonianFixture {
+        private final int size;
+        private final Direction[] next;
+        private final int[] order;
+
+        HamiltonianFixture(int size) {
+            this.size = size;
+            this.next = Autopilot.buildCycle(size, size);
+            this.order = new int[size * size];
+            int cell = 0;
+            for (int i = 0; i < order.length; i++) {
+                order[i] = cell;
+                Direction d = next[cell];
+                cell += d.dy * size + d.dx;
+            }
+        }
+
+        Direction next(int cell) {
+            return next[cell];
+        }
+
+        // Lays a body of the given length along the cycle, head at the end of the run.
+        void place(GameEngine engine, int length) {
+            length = Math.max(3, Math.min(length, order.length - 1));
+            int[] cells = new int[length];
+            for (int i = 0; i < length; i++) {
+                cells[i] = order[length - 1 - i];
+            }
+            engine.reset(cells, length, next[cells[1]]);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Many snakes on one shared board. Each tick has two phases:
+//   propose - every snake picks a direction and target cell from the previous tick's
+//             state only; this runs in parallel across the pool.
+//   resolve - sequential and order-independent: tails leave first, heads aiming at the
+//             same cell all die, heads entering an occupied cell or a wall die, and the
+//             survivors move and eat.
+// AI snakes use their own GameRandom, so the result is the same for any thread count.
+public class ArenaEngine {
+    public static final int NONE = GameEngine.NONE;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int INITIAL_LENGTH = 3;
+    private static final int RESPAWN_TICKS = 20;
+    private static final int SPAWN_ATTEMPTS = 32;
+    private static final int TASK_SNAKES = 256; // snakes per parallel task
+    private static final int SEARCH_RINGS = 3;  // food search radius in FoodIndex buckets
+
+    private final int cols;
+    private final int rows;
+    private final int count;
+    private final Occupancy grid; // bodies of every snake
+    private final FoodIndex food;
+    private final int foodTarget;
+    private final GameRandom random; // board events; only used while resolving
+    private final ForkJoinPool pool;
+
+    // Per-snake state
+    private final int[][] bodies; // ring buffers of cells, head at heads[i]
+    private final int[] heads;
+    private final int[] lengths;
+    private final int[] bodyParts;
+    private final Direction[] directions;
+    private final Direction[] input; // latest player input, null for AI snakes
+    private final boolean[] human;
+    private final boolean[] alive;
+    private final long[] respawnAt;
+    private final int[] scores;
+    private final int[] deaths;
+    private final GameRandom[] brains;
+    private final int[] targets; // food each AI snake is heading for, kept until eaten
+
+    // Tick scratch
+    private final int[] proposals;
+    private final long[] claims;
+    private long tickCount;
+    private int aliveCount;
+
+    public ArenaEngine(int cols, int rows, int snakes, long seed, ForkJoinPool pool) {
+        this.cols = cols;
+        this.rows = rows;
+        this.count = snakes;
+        this.pool = pool;
+        this.grid = Occupancy.forBoard(cols, rows);
+        this.food = new FoodIndex(cols, rows);
+        this.foodTarget = snakes + 16;
+        this.random = new GameRandom(seed);
+        bodies = new int[snakes][16];
+        heads = new int[snakes];
+        lengths = new int[snakes];
+        bodyParts = new int[snakes];
+        directions = new Direction[snakes];
+        input = new Direction[snakes];
+        human = new boolean[snakes];
+        alive = new boolean[snakes];
+        respawnAt = new long[snakes];
+        scores = new int[snakes];
+        deaths = new int[snakes];
+        brains = new GameRandom[snakes];
+        targets = new int[snakes];
+        Arrays.fill(targets, NONE);
+        proposals = new int[snakes];
+        claims = new long[snakes];
+        for (int i = 0; i < snakes; i++) {
+            brains[i] = new GameRandom(seed ^ (0x9E3779B97F4A7C15L * (i + 1)));
+            directions[i] = Direction.RIGHT;
+            spawn(i);
+        }
+        refillFood();
+    }
+
+    // Hands snake i to a player; its moves then come from setDirection.
+    public void setHuman(int i, boolean isHuman) {
+        human[i] = isHuman;
+    }
+
+    public void setDirection(int i, Direction direction) {
+        input[i] = direction;
+    }
+
+    public void tick() {
+        tickCount++;
+        for (int i = 0; i < count; i++) {
+            if (!alive[i] && tickCount >= respawnAt[i]) spawn(i);
+        }
+        if (pool == null || pool.getParallelism() == 1 || count <= TASK_SNAKES) {
+            propose(0, count);
+        } else {
+            pool.invoke(new ProposeTask(0, count));
+        }
+        resolve();
+    }
+
+    private final class ProposeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        ProposeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TASK_SNAKES) {
+                propose(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ProposeTask(from, mid), new ProposeTask(mid, to));
+            }
+        }
+    }
+
+    // Phase one: reads shared state, writes only the slots of snakes in [from, to).
+    private void propose(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!alive[i]) {
+                proposals[i] = NONE;
+                continue;
+            }
+            Direction d = human[i] ? input[i] : think(i);
+            if (d != null && !d.isOpposite(directions[i])) {
+                directions[i] = d;
+            }
+            int head = bodies[i][heads[i]];
+            int x = head % cols + directions[i].dx;
+            int y = head / cols + directions[i].dy;
+            proposals[i] = x < 0 || y < 0 || x >= cols || y >= rows ? NONE : y * cols + x;
+        }
+    }
+
+    // Heads for the nearest food among the moves that are free next tick; wanders when
+    // no food is close.
+    private Direction think(int i) {
+        int head = bodies[i][heads[i]];
+        int hx = head % cols;
+        int hy = head / cols;
+        int target = targets[i];
+        if (target == NONE || !food.contains(target)) {
+            target = targets[i] = food.nearest(hx, hy, SEARCH_RINGS);
+        }
+        GameRandom brain = brains[i];
+        Direction current = directions[i];
+        Direction best = null;
+        int bestScore = Integer.MAX_VALUE;
+        for (Direction d : DIRECTIONS) {
+            if (d.isOpposite(current)) continue;
+            int x = hx + d.dx;
+            int y = hy + d.dy;
+            if (x < 0 || y < 0 || x >= cols || y >= rows || isBlocked(i, y * cols + x)) continue;
+            int score = target == NONE
+                    ? (d == current ? 0 : 1 + brain.nextInt(8))
+                    : Math.abs(target % cols - x) + Math.abs(target / cols - y);
+            if (score < bestScore || (score == bestScore && d == current)) {
+                best = d;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private boolean isBlocked(int i, int cell) {
+        if (!grid.isOccupied(cell)) return false;
+        // Our own tail moves away this tick unless we are growing
+        return !(lengths[i] >= bodyParts[i] && cell == tail(i));
+    }
+
+    // Phase two.
+    private void resolve() {
+        for (int i = 0; i < count; i++) {
+            if (alive[i] && lengths[i] >= bodyParts[i]) {
+                grid.release(tail(i));
+                lengths[i]--;
+            }
+        }
+
+        int claimCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (alive[i] && proposals[i] != NONE) {
+                claims[claimCount++] = (long) proposals[i] << 32 | i;
+            }
+        }
+        if (pool != null && pool.getParallelism() > 1 && claimCount > 8192) {
+            // Run from inside the pool, parallelSort forks its subtasks there rather than
+            // on the common pool, so the configured thread count holds for the sort too
+            int sorted = claimCount;
+            pool.submit(() -> Arrays.parallelSort(claims, 0, sorted)).join();
+        } else {
+            Arrays.sort(claims, 0, claimCount);
+        }
+        for (int k = 0; k < claimCount; k++) {
+            int cell = (int) (claims[k] >>> 32);
+            boolean headOn = (k > 0 && (int) (claims[k - 1] >>> 32) == cell)
+                    || (k + 1 < claimCount && (int) (claims[k + 1] >>> 32) == cell);
+            if (headOn) proposals[(int) claims[k]] = NONE;
+        }
+        for (int i = 0; i < count; i++) {
+            if (alive[i] && proposals[i] != NONE && grid.isOccupied(proposals[i])) {
+                proposals[i] = NONE;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!alive[i]) continue;
+            int target = proposals[i];
+            if (target == NONE) {
+                kill(i);
+                continue;
+            }
+            grid.occupy(target);
+            pushHead(i, target);
+            if (food.remove(target)) {
+                bodyParts[i]++;
+                scores[i]++;
+            }
+        }
+        refillFood();
+    }
+
+    private void kill(int i) {
+        for (int s = 0; s < lengths[i]; s++) {
+            grid.release(bodyCell(i, s));
+        }
+        lengths[i] = 0;
+        alive[i] = false;
+        aliveCount--;
+        deaths[i]++;
+        respawnAt[i] = tickCount + RESPAWN_TICKS;
+    }
+
+    // Places snake i as a short horizontal body facing right on free cells, if it finds room.
+    private void spawn(int i) {
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            int head = grid.sampleFree(random);
+            if (head == NONE) break;
+            int x = head % cols;
+            int y = head / cols;
+            if (x < INITIAL_LENGTH || x >= cols - 1) continue;
+            boolean free = true;
+            for (int s = 0; s < INITIAL_LENGTH && free; s++) {
+                int cell = y * cols + x - s;
+                free = !grid.isOccupied(cell) && !food.contains(cell);
+            }
+            if (!free) continue;
+            lengths[i] = 0;
+            heads[i] = 0;
+            for (int s = INITIAL_LENGTH - 1; s >= 0; s--) {
+                int cell = y * cols + x - s;
+                grid.occupy(cell);
+                pushHead(i, cell);
+            }
+            bodyParts[i] = INITIAL_LENGTH;
+            directions[i] = Direction.RIGHT;
+            input[i] = null;
+            scores[i] = 0;
+            alive[i] = true;
+            aliveCount++;
+            return;
+        }
+        respawnAt[i] = tickCount + RESPAWN_TICKS;
+    }
+
+    // Food cells are free in the grid, so stop once every free cell holds food.
+    private void refillFood() {
+        while (food.size() < foodTarget && food.size() < grid.getFreeCount()) {
+            int cell = grid.sampleFree(random);
+            if (cell == NONE) return;
+            if (!food.contains(cell)) food.add(cell);
+        }
+    }
+
+    private void pushHead(int i, int cell) {
+        int[] body = bodies[i];
+        if (lengths[i] == body.length) {
+            int[] grown = new int[body.length * 2];
+            for (int s = 0; s < lengths[i]; s++) {
+                grown[s] = bodyCell(i, s);
+            }
+            bodies[i] = body = grown;
+            heads[i] = 0;
+        }
+        heads[i] = (heads[i] - 1) & (body.length - 1);
+        body[heads[i]] = cell;
+        lengths[i]++;
+    }
+
+    // Segment 0 is the head.
+    public int bodyCell(int i, int segment) {
+        int[] body = bodies[i];
+        return body[(heads[i] + segment) & (body.length - 1)];
+    }
+
+    private int tail(int i) {
+        return bodyCell(i, lengths[i] - 1);
+    }
+
+    // Order-sensitive hash of every snake, for checking that runs agree.
+    public long checksum() {
+        long hash = tickCount;
+        for (int i = 0; i < count; i++) {
+            hash = hash * 31 + (alive[i] ? bodyCell(i, 0) : -1);
+            hash = hash * 31 + lengths[i];
+            hash = hash * 31 + scores[i];
+        }
+        return hash;
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getSnakeCount() { return count; }
+    public int getAliveCount() { return aliveCount; }
+    public long getTickCount() { return tickCount; }
+    public boolean isAlive(int i) { return alive[i]; }
+    public int getHead(int i) { return alive[i] ? bodyCell(i, 0) : NONE; }
+    public int getLength(int i) { return lengths[i]; }
+    public int getScore(int i) { return scores[i]; }
+    public int getDeaths(int i) { return deaths[i]; }
+    public Direction getDirection(int i) { return directions[i]; }
+    public boolean isOccupied(int cell) { return grid.isOccupied(cell); }
+    public boolean isFood(int cell) { return food.contains(cell); }
+    public int getFoodCount() { return food.size(); }
+}
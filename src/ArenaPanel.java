@@ -0,0 +1,102 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.concurrent.ForkJoinPool;
+
+// Arena mode: the player steers snake 0 with the arrow keys among AI snakes on a shared
+// board. The view is a window around the player's head, painted cell by cell.
+public class ArenaPanel extends JPanel implements ActionListener {
+    private static final int UNIT_SIZE = 10;
+    private static final int PLAYER = 0;
+
+    private final ArenaEngine arena;
+    private final Timer timer;
+    private final int viewCols = GamePanel.SCREEN_WIDTH / UNIT_SIZE;
+    private final int viewRows = GamePanel.SCREEN_HEIGHT / UNIT_SIZE;
+    private int originX;
+    private int originY;
+    private long tickNanos;
+
+    public ArenaPanel(int snakes, int worldSize, int gameDelay) {
+        arena = new ArenaEngine(worldSize, worldSize, snakes, System.nanoTime(), ForkJoinPool.commonPool());
+        arena.setHuman(PLAYER, true);
+        setPreferredSize(new Dimension(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT));
+        setBackground(GameRenderer.BACKGROUND);
+        setFocusable(true);
+        addKeyListener(new ArenaKeyAdapter());
+        timer = new Timer(gameDelay, this);
+        timer.start();
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long start = System.nanoTime();
+        arena.tick();
+        tickNanos = System.nanoTime() - start;
+        int head = arena.getHead(PLAYER);
+        if (head != ArenaEngine.NONE) {
+            originX = Math.max(0, Math.min(head % arena.getCols() - viewCols / 2, arena.getCols() - viewCols));
+            originY = Math.max(0, Math.min(head / arena.getCols() - viewRows / 2, arena.getRows() - viewRows));
+        }
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int cols = arena.getCols();
+        int visibleCols = Math.min(viewCols, cols - originX);
+        int visibleRows = Math.min(viewRows, arena.getRows() - originY);
+        g.setColor(GameRenderer.OUTSIDE);
+        g.fillRect(visibleCols * UNIT_SIZE, 0, getWidth(), getHeight());
+        g.fillRect(0, visibleRows * UNIT_SIZE, getWidth(), getHeight());
+        for (int y = 0; y < visibleRows; y++) {
+            for (int x = 0; x < visibleCols; x++) {
+                int cell = (originY + y) * cols + originX + x;
+                if (arena.isOccupied(cell)) {
+                    g.setColor(GameRenderer.BODY);
+                    g.fillRect(x * UNIT_SIZE, y * UNIT_SIZE, UNIT_SIZE, UNIT_SIZE);
+                } else if (arena.isFood(cell)) {
+                    g.setColor(Color.RED);
+                    g.fillOval(x * UNIT_SIZE, y * UNIT_SIZE, UNIT_SIZE, UNIT_SIZE);
+                }
+            }
+        }
+        if (arena.isAlive(PLAYER)) {
+            for (int s = 0; s < arena.getLength(PLAYER); s++) {
+                int cell = arena.bodyCell(PLAYER, s);
+                int x = cell % cols - originX;
+                int y = cell / cols - originY;
+                if (x < 0 || y < 0 || x >= viewCols || y >= viewRows) continue;
+                g.setColor(s == 0 ? Color.GREEN : Color.CYAN);
+                g.fillRect(x * UNIT_SIZE, y * UNIT_SIZE, UNIT_SIZE, UNIT_SIZE);
+            }
+        }
+        g.setColor(Color.CYAN);
+        g.setFont(GameRenderer.HUD_FONT);
+        String status = arena.isAlive(PLAYER) ? "Score: " + arena.getScore(PLAYER) : "Respawning...";
+        g.drawString(status, 10, 30);
+        g.drawString(String.format("Alive %d/%d  tick %.2f ms", arena.getAliveCount(), arena.getSnakeCount(),
+                tickNanos / 1e6), 250, 30);
+    }
+
+    public class ArenaKeyAdapter extends KeyAdapter {
+        @Override
+        public void keyPressed(KeyEvent e) {
+            switch (e.getKeyCode()) {
+                case KeyEvent.VK_LEFT:
+                    arena.setDirection(PLAYER, Direction.LEFT);
+                    break;
+                case KeyEvent.VK_RIGHT:
+                    arena.setDirection(PLAYER, Direction.RIGHT);
+                    break;
+                case KeyEvent.VK_UP:
+                    arena.setDirection(PLAYER, Direction.UP);
+                    break;
+                case KeyEvent.VK_DOWN:
+                    arena.setDirection(PLAYER, Direction.DOWN);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Loads what the game screen needs on background threads while the speed menu is up:
+// sounds are decoded in parallel and handed to SoundEngine, fonts are resolved once and
+// shared, the score store is opened and a GameRenderer with its pre-rendered layers is
+// built ahead of the first game. Anything asked for before it is ready is waited for
+// (or loaded on the spot), so callers never see a half-loaded asset.
+//
+// Also keeps the startup metrics: time to first frame (menu or resumed game painted)
+// and time to playable (speed chosen until the first frame of the running game).
+public class AssetManager {
+    static final String[][] SOUND_FILES = {
+            {"food", "sounds/food.wav"},
+            {"gameover", "sounds/gameover.wav"},
+            {"move", "sounds/move.wav"},
+            {"music", "sounds/music.wav"},
+    };
+    private static final FontRenderContext FONT_CONTEXT = new FontRenderContext(null, true, true);
+    private static AssetManager shared;
+
+    private final long launchNanos = System.nanoTime();
+    private final ExecutorService pool;
+    private final Map<String, CompletableFuture<short[]>> sounds = new ConcurrentHashMap<>();
+    private final Map<String, Font> fonts = new ConcurrentHashMap<>();
+    private CompletableFuture<GameRenderer> renderer; // guarded by this
+    private volatile long readyNanos;
+    private volatile long firstFrameNanos;
+    private volatile long selectedNanos;
+
+    private AssetManager() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "asset-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized AssetManager shared() {
+        if (shared == null) {
+            shared = new AssetManager();
+        }
+        return shared;
+    }
+
+    // Starts every background load; returns at once.
+    public void preload() {
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        CompletableFuture<?>[] decoded = new CompletableFuture<?>[SOUND_FILES.length];
+        for (int i = 0; i < SOUND_FILES.length; i++) {
+            decoded[i] = sound(SOUND_FILES[i][1]);
+        }
+        tasks.add(CompletableFuture.allOf(decoded).thenRunAsync(SoundEngine::shared, pool));
+        tasks.add(CompletableFuture.runAsync(this::resolveFonts, pool));
+        tasks.add(CompletableFuture.runAsync(ScoreStore::shared, pool));
+        tasks.add(CompletableFuture.runAsync(AssetManager::loadGameClasses, pool));
+        synchronized (this) {
+            if (renderer == null) renderer = buildRenderer();
+            tasks.add(renderer);
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((result, error) -> {
+            readyNanos = System.nanoTime();
+            if (error != null) System.err.println("Error preloading assets: " + error.getMessage());
+            System.out.printf("Startup: assets ready %.0f ms after launch%n", (readyNanos - launchNanos) / 1e6);
+        });
+    }
+
+    // Decoded samples of a WAV file, decoding it now if preloading has not reached it.
+    public CompletableFuture<short[]> sound(String path) {
+        return sounds.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> SoundEngine.decode(p), pool));
+    }
+
+    // Shared Font instances; the first lookup of a family is slow, so preload resolves them.
+    public static Font font(String name, int style, int size) {
+        return shared().fonts.computeIfAbsent(name + '-' + style + '-' + size, key -> new Font(name, style, size));
+    }
+
+    private void resolveFonts() {
+        Font[] used = {
+                GameRenderer.HUD_FONT, GameRenderer.SCORE_FONT, GameRenderer.TITLE_FONT, GameRenderer.TELEMETRY_FONT,
+                font(SpeedSelectionPanel.FONT_NAME, Font.BOLD, 40), font(SpeedSelectionPanel.FONT_NAME, Font.PLAIN, 30),
+                font(SpeedSelectionPanel.FONT_NAME, Font.BOLD, 20), font("SansSerif", Font.BOLD, 24),
+        };
+        for (Font font : used) {
+            font.getStringBounds("Score: 0123456789 Game Over", FONT_CONTEXT); // loads the font file and glyphs
+        }
+    }
+
+    // Class loading and static setup of the game screen's code, done off the EDT.
+    private static void loadGameClasses() {
+        GameEngine engine = new GameEngine(GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE,
+                GamePanel.SCREEN_HEIGHT / GamePanel.UNIT_SIZE, GameConfig.DEFAULT.normalDelay);
+        engine.reset(0);
+        engine.tick();
+        new ReplayRecorder();
+    }
+
+    private CompletableFuture<GameRenderer> buildRenderer() {
+        return CompletableFuture.supplyAsync(
+                () -> new GameRenderer(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT, GamePanel.UNIT_SIZE), pool);
+    }
+
+    // A renderer for a new game screen; the next one is built in the background.
+    public synchronized GameRenderer takeRenderer() {
+        CompletableFuture<GameRenderer> ready = renderer == null ? buildRenderer() : renderer;
+        renderer = buildRenderer();
+        return ready.join();
+    }
+
+    // Called on the EDT when the first screen has been painted.
+    public void markFirstFrame() {
+        if (firstFrameNanos != 0) return;
+        firstFrameNanos = System.nanoTime();
+        System.out.printf("Startup: first frame %.0f ms after launch%n", (firstFrameNanos - launchNanos) / 1e6);
+    }
+
+    public void markSpeedSelected() {
+        selectedNanos = System.nanoTime();
+    }
+
+    // Called on the EDT when a running game has been painted.
+    public void markPlayable() {
+        if (selectedNanos == 0) return;
+        long now = System.nanoTime();
+        System.out.printf("Startup: playable %.0f ms after speed selection (%.0f ms after launch)%n",
+                (now - selectedNanos) / 1e6, (now - launchNanos) / 1e6);
+        selectedNanos = 0;
+    }
+
+    public long getReadyNanos() {
+        return readyNanos == 0 ? -1 : readyNanos - launchNanos;
+    }
+}
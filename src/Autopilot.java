@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+// Built-in AI player. Each decision runs a BFS from the head to the food over the
+// occupancy grid; the first step is taken only if the tail is still reachable from the
+// cell it leads to, so the snake can't seal itself in. Otherwise it chases its tail,
+// and as a last resort follows a Hamiltonian cycle or any move that survives the tick.
+// All search state lives in arrays allocated once per board size, reused every tick.
+public class Autopilot implements Controller {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int cols;
+    private int rows;
+    private int[] queue = new int[0];
+    private int[] parent = new int[0];
+    private int[] visited = new int[0]; // stamp == generation marks a visited cell
+    private int generation;
+    private Direction[] cycle; // next step along a Hamiltonian cycle, null if none exists
+    private final Histogram latency = new Histogram();
+
+    @Override
+    public Direction nextDirection(GameEngine engine) {
+        long start = System.nanoTime();
+        Direction decision = decide(engine);
+        latency.record(System.nanoTime() - start);
+        return decision;
+    }
+
+    // Per-decision latency in nanoseconds.
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    private Direction decide(GameEngine engine) {
+        prepare(engine);
+        int head = engine.getHead();
+        int tail = engine.getBodyCell(engine.getBodyLength() - 1);
+        boolean growing = engine.getBodyLength() < engine.getBodyParts();
+        Direction current = engine.getDirection();
+
+        int food = engine.getFood();
+        if (food != GameEngine.NONE) {
+            int step = firstStep(engine, head, food, tail, growing);
+            if (step != GameEngine.NONE && tailReachableAfter(engine, step, tail, growing)) {
+                return toward(engine, head, step);
+            }
+        }
+
+        // No safe route to the food: stay alive by following the tail
+        int first = firstStep(engine, head, tail, GameEngine.NONE, false);
+        if (first != GameEngine.NONE && !(first == tail && growing)) {
+            return toward(engine, head, first);
+        }
+
+        if (cycle != null) {
+            Direction d = cycle[head];
+            if (!d.isOpposite(current) && isFree(engine, step(engine, head, d), tail, growing)) {
+                return d;
+            }
+        }
+        for (Direction d : DIRECTIONS) {
+            if (!d.isOpposite(current) && isFree(engine, step(engine, head, d), tail, growing)) {
+                return d;
+            }
+        }
+        return null; // every move is fatal
+    }
+
+    private void prepare(GameEngine engine) {
+        if (engine.getCols() == cols && engine.getRows() == rows) return;
+        cols = engine.getCols();
+        rows = engine.getRows();
+        int cells = cols * rows;
+        queue = new int[cells];
+        parent = new int[cells];
+        visited = new int[cells];
+        generation = 0;
+        cycle = buildCycle(cols, rows);
+    }
+
+    // BFS from 'from' to 'target'; returns the neighbour of 'from' on a shortest path, or NONE.
+    // 'passable' is one extra occupied cell treated as free (the tail, which moves away).
+    private int firstStep(GameEngine engine, int from, int target, int passable, boolean growing) {
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+        visited[from] = stamp;
+        queue[tailIndex++] = from;
+        while (headIndex < tailIndex) {
+            int cell = queue[headIndex++];
+            int x = cell % cols;
+            int y = cell / cols;
+            for (Direction d : DIRECTIONS) {
+                int nx = x + d.dx;
+                int ny = y + d.dy;
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int next = ny * cols + nx;
+                if (visited[next] == stamp) continue;
+                if (next != target && engine.isOccupied(next) && !(next == passable && !growing)) continue;
+                visited[next] = stamp;
+                parent[next] = cell;
+                if (next == target) {
+                    int step = next;
+                    while (parent[step] != from) {
+                        step = parent[step];
+                    }
+                    return step;
+                }
+                queue[tailIndex++] = next;
+            }
+        }
+        return GameEngine.NONE;
+    }
+
+    // After moving to 'next', can the head still reach the tail? The tail has then moved up
+    // one segment unless the snake is growing.
+    private boolean tailReachableAfter(GameEngine engine, int next, int tail, boolean growing) {
+        int length = engine.getBodyLength();
+        if (length < 2) return true;
+        int newTail = growing ? tail : engine.getBodyCell(length - 2);
+        if (next == newTail) return true;
+        int stamp = nextGeneration();
+        int headIndex = 0;
+        int tailIndex = 0;
+        visited[next] = stamp;
+        visited[engine.getHead()] = stamp; // the old head becomes body
+        queue[tailIndex++] = next;
+        while (headIndex < tailIndex) {
+            int cell = queue[headIndex++];
+            int x = cell % cols;
+            int y = cell / cols;
+            for (Direction d : DIRECTIONS) {
+                int nx = x + d.dx;
+                int ny = y + d.dy;
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int neighbour = ny * cols + nx;
+                if (neighbour == newTail) return true;
+                if (visited[neighbour] == stamp) continue;
+                if (engine.isOccupied(neighbour) && !(neighbour == tail && !growing)) continue;
+                visited[neighbour] = stamp;
+                queue[tailIndex++] = neighbour;
+            }
+        }
+        return false;
+    }
+
+    private int nextGeneration() {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        return generation;
+    }
+
+    private boolean isFree(GameEngine engine, int cell, int tail, boolean growing) {
+        return cell != GameEngine.NONE && (!engine.isOccupied(cell) || (cell == tail && !growing));
+    }
+
+    private int step(GameEngine engine, int cell, Direction d) {
+        int x = engine.x(cell) + d.dx;
+        int y = engine.y(cell) + d.dy;
+        if (x < 0 || y < 0 || x >= cols || y >= rows) return GameEngine.NONE;
+        return y * cols + x;
+    }
+
+    private Direction toward(GameEngine engine, int from, int to) {
+        int dx = engine.x(to) - engine.x(from);
+        int dy = engine.y(to) - engine.y(from);
+        for (Direction d : DIRECTIONS) {
+            if (d.dx == dx && d.dy == dy) return d;
+        }
+        return null;
+    }
+
+    // Serpentine cycle with column 0 as the return lane; needs an even number of rows.
+    static Direction[] buildCycle(int cols, int rows) {
+        if (rows % 2 != 0 || cols < 2) return null;
+        Direction[] next = new Direction[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                Direction d;
+                if (x == 0) {
+                    d = y == 0 ? Direction.RIGHT : Direction.UP;
+                } else if (y % 2 == 0) {
+                    d = x < cols - 1 ? Direction.RIGHT : Direction.DOWN;
+                } else if (x > 1) {
+                    d = Direction.LEFT;
+                } else {
+                    d = y == rows - 1 ? Direction.LEFT : Direction.DOWN;
+                }
+                next[y * cols + x] = d;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Checkpoints a running game to disk every few ticks. The engine hands over a captured
+// GameState (see GameEngine.capture) and goes on; the "autosave" thread encodes the
+// newest one into a reused direct buffer and replaces the file atomically. If the
+// writer is still busy, a newer checkpoint simply replaces the one waiting, so the
+// tick loop never waits on encoding or disk.
+public class Autosave implements Runnable {
+    public static final String DEFAULT_FILE = "autosave.snkg";
+    private static final Object DISCARD = new Object(); // delete the save instead of writing one
+
+    private static Autosave shared;
+
+    private final Path path;
+    private final Path temp;
+    private final int interval;
+    private final AtomicReference<Object> pending = new AtomicReference<>();
+    private final Thread writer;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+    private volatile boolean closed;
+    private volatile long written;
+    private volatile long superseded;
+
+    public Autosave(String file, int interval) {
+        this.path = Paths.get(file);
+        this.temp = Paths.get(file + ".tmp");
+        this.interval = interval;
+        writer = new Thread(this, "autosave");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // The game's autosave file, checkpointing every 'interval' ticks; flushed at exit.
+    public static synchronized Autosave shared(int interval) {
+        if (shared == null) {
+            shared = new Autosave(DEFAULT_FILE, interval);
+            Autosave autosave = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(autosave::close));
+        }
+        return shared;
+    }
+
+    // Ticks between checkpoints.
+    public int getInterval() {
+        return interval;
+    }
+
+    // Called from the tick thread.
+    public void offer(GameState state) {
+        submit(state);
+    }
+
+    // The game ended; remove the save so it is not resumed.
+    public void discard() {
+        submit(DISCARD);
+    }
+
+    private void submit(Object command) {
+        if (closed) return;
+        if (pending.getAndSet(command) instanceof GameState) {
+            superseded++;
+        }
+        LockSupport.unpark(writer);
+    }
+
+    // The newest save, or null if there is none or it cannot be read.
+    public GameState load() {
+        if (!Files.exists(path)) return null;
+        try {
+            return GameState.load(path);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable save " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Object command = pending.getAndSet(null);
+            if (command == null) {
+                if (closed) return;
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                if (command == DISCARD) {
+                    Files.deleteIfExists(path);
+                } else {
+                    write((GameState) command);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing autosave: " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(GameState state) throws IOException {
+        buffer.clear();
+        buffer = state.encode(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        written++;
+    }
+
+    // Writes whatever is still pending, then stops the writer.
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getStats() {
+        return "written=" + written + " superseded=" + superseded;
+    }
+}
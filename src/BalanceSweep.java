@@ -0,0 +1,217 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Headless balance tuning: plays many games per parameter combination across all cores
+// and writes score distributions and survival curves as CSV. Games still running after
+// MAX_TICKS are stopped and counted as cut off, not as deaths: the survival curve ends at
+// MAX_TICKS with the share still alive, and the summary gives their count.
+//
+// Usage: java -cp out BalanceSweep [--games N] [--threads N] [--board N] [--out prefix]
+//            [--delays 150,100,65] [--chance 0,30,60] [--effect 5000] [--every 5] [--step 10]
+//            [--player greedy|autopilot] [--events file.snke]
+// --events records every game's events (see EventBus) to a columnar file; each worker
+// thread publishes to its own bus and one EventSink writes them all.
+public class BalanceSweep {
+    private static final int MAX_TICKS = 20_000; // games still alive after this are cut off
+    private static final int SURVIVAL_BUCKET_TICKS = 50;
+    private static final int EVENT_BUS_CAPACITY = 1 << 16;
+
+    static class Stats {
+        long[] scoreCounts = new long[64];
+        final long[] deaths = new long[MAX_TICKS / SURVIVAL_BUCKET_TICKS + 1];
+        long games;
+        long cutOff; // still alive at MAX_TICKS
+        long ticks;
+        long scoreSum;
+        long cpuNanos;
+
+        void record(int score, int ticksPlayed, boolean died) {
+            if (score >= scoreCounts.length) {
+                scoreCounts = Arrays.copyOf(scoreCounts, Math.max(score + 1, scoreCounts.length * 2));
+            }
+            scoreCounts[score]++;
+            if (died) {
+                deaths[ticksPlayed / SURVIVAL_BUCKET_TICKS]++;
+            } else {
+                cutOff++;
+            }
+            games++;
+            ticks += ticksPlayed;
+            scoreSum += score;
+        }
+
+        void merge(Stats other) {
+            if (other.scoreCounts.length > scoreCounts.length) {
+                scoreCounts = Arrays.copyOf(scoreCounts, other.scoreCounts.length);
+            }
+            for (int i = 0; i < other.scoreCounts.length; i++) scoreCounts[i] += other.scoreCounts[i];
+            for (int i = 0; i < deaths.length; i++) deaths[i] += other.deaths[i];
+            games += other.games;
+            cutOff += other.cutOff;
+            ticks += other.ticks;
+            scoreSum += other.scoreSum;
+            cpuNanos += other.cpuNanos;
+        }
+
+        int percentile(double p) {
+            long target = (long) Math.ceil(games * p);
+            long seen = 0;
+            for (int score = 0; score < scoreCounts.length; score++) {
+                seen += scoreCounts[score];
+                if (seen >= target) return score;
+            }
+            return scoreCounts.length - 1;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        String out = "sweep";
+        String player = "greedy";
+        String eventFile = null;
+        int[] delays = {GameConfig.DEFAULT.easyDelay, GameConfig.DEFAULT.normalDelay, GameConfig.DEFAULT.hardDelay};
+        int[] chances = {0, GameConfig.DEFAULT.powerUpChancePercent, 60};
+        int[] effects = {GameConfig.DEFAULT.effectDurationMillis};
+        int[] everies = {GameConfig.DEFAULT.speedUpEveryFood};
+        int[] steps = {GameConfig.DEFAULT.speedUpStepMillis};
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--board": board = Integer.parseInt(args[++i]); break;
+                case "--out": out = args[++i]; break;
+                case "--player": player = args[++i]; break;
+                case "--events": eventFile = args[++i]; break;
+                case "--delays": delays = parseList(args[++i]); break;
+                case "--chance": chances = parseList(args[++i]); break;
+                case "--effect": effects = parseList(args[++i]); break;
+                case "--every": everies = parseList(args[++i]); break;
+                case "--step": steps = parseList(args[++i]); break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        EventBus[] buses = new EventBus[threads];
+        EventSink sink = null;
+        if (eventFile != null) {
+            for (int t = 0; t < threads; t++) buses[t] = new EventBus(EVENT_BUS_CAPACITY);
+            sink = new EventSink(Paths.get(eventFile), buses);
+        }
+        String header = "delay,powerUpChance,effectMillis,speedUpEvery,speedUpStep,minDelay";
+        try (PrintWriter summary = new PrintWriter(new FileWriter(out + "-summary.csv"));
+             PrintWriter scores = new PrintWriter(new FileWriter(out + "-scores.csv"));
+             PrintWriter survival = new PrintWriter(new FileWriter(out + "-survival.csv"))) {
+            summary.println(header + ",games,meanScore,p50,p90,p99,meanTicks,gamesPerSecPerCore,cutOff");
+            scores.println(header + ",score,games");
+            survival.println(header + ",tick,surviving");
+            for (int delay : delays) {
+                for (int chance : chances) {
+                    for (int effect : effects) {
+                        for (int every : everies) {
+                            for (int step : steps) {
+                                GameConfig config = new GameConfig(GameConfig.DEFAULT.easyDelay, GameConfig.DEFAULT.normalDelay,
+                                        GameConfig.DEFAULT.hardDelay, chance, effect, every, step, GameConfig.DEFAULT.minDelay);
+                                Stats stats = run(pool, threads, board, delay, config, games, player, buses);
+                                String key = delay + "," + config;
+                                double perCore = stats.games / (stats.cpuNanos / 1e9);
+                                summary.printf(Locale.ROOT, "%s,%d,%.3f,%d,%d,%d,%.1f,%.0f,%d%n", key, stats.games,
+                                        (double) stats.scoreSum / stats.games, stats.percentile(0.5), stats.percentile(0.9),
+                                        stats.percentile(0.99), (double) stats.ticks / stats.games, perCore, stats.cutOff);
+                                for (int score = 0; score < stats.scoreCounts.length; score++) {
+                                    if (stats.scoreCounts[score] > 0) {
+                                        scores.println(key + "," + score + "," + stats.scoreCounts[score]);
+                                    }
+                                }
+                                // Cut-off games count as surviving up to MAX_TICKS, where the curve ends
+                                long alive = stats.games;
+                                for (int bucket = 0; bucket < stats.deaths.length && alive > 0; bucket++) {
+                                    survival.printf(Locale.ROOT, "%s,%d,%.6f%n", key,
+                                            bucket * SURVIVAL_BUCKET_TICKS, (double) alive / stats.games);
+                                    alive -= stats.deaths[bucket];
+                                }
+                                System.out.printf("%s: %d games, mean score %.2f, %.0f games/s/core%n",
+                                        key, stats.games, (double) stats.scoreSum / stats.games, perCore);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            if (sink != null) sink.close();
+        }
+        System.out.println("Wrote " + out + "-summary.csv, " + out + "-scores.csv, " + out + "-survival.csv");
+        if (sink != null) {
+            long dropped = 0;
+            for (EventBus bus : buses) dropped += bus.getDropped();
+            System.out.printf("Wrote %s: %d events, %.1f MB, %d dropped%n", eventFile, sink.getEvents(),
+                    sink.getBytes() / 1e6, dropped);
+        }
+    }
+
+    // Part t of the games publishes to buses[t], if set; the parts are done on return, so
+    // the next run's part t is again the only writer of its bus.
+    static Stats run(ExecutorService pool, int threads, int board, int delay, GameConfig config, int games,
+                     String player, EventBus[] buses) throws Exception {
+        List<Future<Stats>> parts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int share = games / threads + (t < games % threads ? 1 : 0);
+            EventBus bus = buses[t];
+            parts.add(pool.submit(() -> play(board, delay, config, share, player, bus)));
+        }
+        Stats total = new Stats();
+        for (Future<Stats> part : parts) {
+            total.merge(part.get());
+        }
+        return total;
+    }
+
+    static Stats play(int board, int delay, GameConfig config, int games, String playerName, EventBus events) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long cpuStart = threadBean.getCurrentThreadCpuTime();
+        Stats stats = new Stats();
+        GameEngine engine = new GameEngine(board, board, delay, config);
+        engine.setEventBus(events);
+        Controller player = "autopilot".equals(playerName) ? new Autopilot() : new GreedyController();
+        for (int game = 0; game < games; game++) {
+            int score = playGame(engine, player);
+            stats.record(score, (int) Math.min(engine.getTickCount(), MAX_TICKS), !engine.isRunning());
+        }
+        stats.cpuNanos = threadBean.getCurrentThreadCpuTime() - cpuStart;
+        return stats;
+    }
+
+    // Plays one game to the end (or MAX_TICKS) and returns the score.
+    public static int playGame(GameEngine engine, Controller player) {
+        engine.reset();
+        while (engine.isRunning() && engine.getTickCount() < MAX_TICKS) {
+            Direction direction = player.nextDirection(engine);
+            if (direction != null) {
+                engine.setPendingDirection(direction);
+            }
+            engine.tick();
+        }
+        return engine.getFoodEaten();
+    }
+
+    private static int[] parseList(String text) {
+        String[] parts = text.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,312 @@
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Many independent games stepped together, for training and evaluating bots. The rules
+// are GameEngine's without power-ups: moving off the board or into the body ends the
+// game (the engine's edge clamp runs the head into its own neck, the same outcome), the
+// tail leaves before the head arrives, and food grows the snake by one.
+//
+// State is struct-of-arrays: one primitive array per field, indexed by game, with the
+// body rings and occupancy bitmaps of all games packed into single arrays. step() splits
+// the games across the pool in blocks of TASK_GAMES; each game only touches its own
+// slots and its own GameRandom state, so results do not depend on the thread count.
+//
+// A game that ends is reset at once: its done flag is set for that step, and the
+// observation already shows the new game. Observations go straight into a buffer the
+// caller provides, cols * rows values per game, game after game: EMPTY, BODY, HEAD or
+// FOOD per cell. Only the cells a step changes are written, so it must not be modified
+// between steps.
+public class BatchEnv {
+    public static final int EMPTY = 0;
+    public static final int BODY = 1;
+    public static final int HEAD = 2;
+    public static final int FOOD = 3;
+    public static final int KEEP = -1; // action: keep the current direction
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int INITIAL_LENGTH = 3;
+    private static final int TASK_GAMES = 256;
+    private static final int NONE = GameEngine.NONE;
+
+    private final int count;
+    private final int cols;
+    private final int rows;
+    private final int cells;
+    private final int ringMask; // ring capacity - 1; the capacity fits a full board
+    private final int words;    // occupancy longs per game
+    private final ForkJoinPool pool;
+
+    // Per game, indexed by game
+    private final int[] bodies;     // ring buffers, game g at [g * (ringMask + 1), ...)
+    private final long[] occupied;  // bitmaps, game g at [g * words, ...)
+    private final int[] heads;      // ring index of the head
+    private final int[] lengths;
+    private final int[] bodyParts;  // length the snake grows to
+    private final int[] directions; // Direction ordinals
+    private final int[] food;
+    private final int[] scores;
+    private final int[] episodeSteps;
+    private final int[] finalScores; // score of the game that ended on the last step
+    private final long[] randomState;
+    private final float[] rewards;
+    private final boolean[] done;
+
+    private int[] actions;
+    private IntBuffer intObservations;
+    private FloatBuffer floatObservations;
+    private long steps;
+    private long episodes;
+    private long episodeScoreSum;
+
+    public BatchEnv(int count, int cols, int rows, long seed, ForkJoinPool pool) {
+        if (cols < 8 || rows < 2) throw new IllegalArgumentException("Board must be at least 8x2: " + cols + "x" + rows);
+        this.count = count;
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cols * rows;
+        this.ringMask = Integer.highestOneBit(cells * 2 - 1) - 1;
+        this.words = (cells + 63) / 64;
+        this.pool = pool;
+        bodies = new int[count * (ringMask + 1)];
+        occupied = new long[count * words];
+        heads = new int[count];
+        lengths = new int[count];
+        bodyParts = new int[count];
+        directions = new int[count];
+        food = new int[count];
+        scores = new int[count];
+        episodeSteps = new int[count];
+        finalScores = new int[count];
+        randomState = new long[count];
+        rewards = new float[count];
+        done = new boolean[count];
+        GameRandom seeds = new GameRandom(seed);
+        for (int g = 0; g < count; g++) {
+            randomState[g] = seeds.nextLong();
+            reset(g);
+        }
+    }
+
+    // Observations from now on go to these buffers (either may be null), at the game's
+    // offset g * cols * rows from the buffer's position. Every game is written in full once.
+    public void setObservationBuffers(IntBuffer ints, FloatBuffer floats) {
+        int needed = count * cells;
+        if (ints != null && ints.remaining() < needed || floats != null && floats.remaining() < needed) {
+            throw new IllegalArgumentException("Observation buffers need " + needed + " values");
+        }
+        intObservations = ints == null ? null : ints.slice();
+        floatObservations = floats == null ? null : floats.slice();
+        for (int g = 0; g < count; g++) {
+            writeBoard(g);
+        }
+    }
+
+    // Steps every game once. actions[g] is a Direction ordinal or KEEP; a reversal is
+    // ignored like a reversing key press.
+    public void step(int[] actions) {
+        if (actions.length < count) throw new IllegalArgumentException("Need " + count + " actions");
+        this.actions = actions;
+        if (pool == null || pool.getParallelism() == 1 || count <= TASK_GAMES) {
+            step(0, count);
+        } else {
+            pool.invoke(new StepTask(0, count));
+        }
+        steps++;
+        for (int g = 0; g < count; g++) {
+            if (done[g]) {
+                episodes++;
+                episodeScoreSum += finalScores[g];
+            }
+        }
+    }
+
+    private final class StepTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        StepTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TASK_GAMES) {
+                step(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StepTask(from, mid), new StepTask(mid, to));
+            }
+        }
+    }
+
+    private void step(int from, int to) {
+        for (int g = from; g < to; g++) {
+            stepGame(g);
+        }
+    }
+
+    private void stepGame(int g) {
+        int action = actions[g];
+        int direction = directions[g];
+        if (action >= 0 && action < 4 && !DIRECTIONS[action].isOpposite(DIRECTIONS[direction])) {
+            direction = action;
+            directions[g] = direction;
+        }
+        episodeSteps[g]++;
+        int ring = g * (ringMask + 1);
+        int headCell = bodies[ring + heads[g]];
+        int x = headCell % cols + DIRECTIONS[direction].dx;
+        int y = headCell / cols + DIRECTIONS[direction].dy;
+        if (x < 0 || y < 0 || x >= cols || y >= rows) {
+            endGame(g);
+            return;
+        }
+        int target = y * cols + x;
+        if (lengths[g] >= bodyParts[g]) {
+            int tail = bodies[ring + ((heads[g] + lengths[g] - 1) & ringMask)];
+            release(g, tail);
+            writeCell(g, tail, EMPTY);
+            lengths[g]--;
+        }
+        if (isOccupied(g, target)) {
+            endGame(g);
+            return;
+        }
+        occupy(g, target);
+        writeCell(g, headCell, BODY);
+        writeCell(g, target, HEAD);
+        heads[g] = (heads[g] - 1) & ringMask;
+        bodies[ring + heads[g]] = target;
+        lengths[g]++;
+        rewards[g] = 0;
+        done[g] = false;
+        if (target == food[g]) {
+            bodyParts[g]++;
+            scores[g]++;
+            rewards[g] = 1;
+            food[g] = sampleFree(g);
+            if (food[g] == NONE) {
+                endGame(g); // the board is full
+                rewards[g] = 1;
+                return;
+            }
+            writeCell(g, food[g], FOOD);
+        }
+    }
+
+    private void endGame(int g) {
+        rewards[g] = -1;
+        done[g] = true;
+        finalScores[g] = scores[g];
+        reset(g);
+        writeBoard(g);
+    }
+
+    private void reset(int g) {
+        Arrays.fill(occupied, g * words, (g + 1) * words, 0L);
+        int ring = g * (ringMask + 1);
+        int start = rows / 2 * cols + 5;
+        lengths[g] = 0;
+        heads[g] = 0;
+        for (int i = INITIAL_LENGTH - 1; i >= 0; i--) {
+            heads[g] = (heads[g] - 1) & ringMask;
+            bodies[ring + heads[g]] = start - i;
+            occupy(g, start - i);
+            lengths[g]++;
+        }
+        bodyParts[g] = INITIAL_LENGTH;
+        directions[g] = Direction.RIGHT.ordinal();
+        scores[g] = 0;
+        episodeSteps[g] = 0;
+        food[g] = sampleFree(g);
+    }
+
+    private boolean isOccupied(int g, int cell) {
+        return (occupied[g * words + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    private void occupy(int g, int cell) {
+        occupied[g * words + (cell >>> 6)] |= 1L << cell;
+    }
+
+    private void release(int g, int cell) {
+        occupied[g * words + (cell >>> 6)] &= ~(1L << cell);
+    }
+
+    // A uniformly chosen free cell: by rejection while at least half the board is free,
+    // otherwise by counting free cells word by word to the chosen one.
+    private int sampleFree(int g) {
+        int free = cells - lengths[g];
+        if (free <= 0) return NONE;
+        if (free * 2 >= cells) {
+            while (true) {
+                int cell = nextInt(g, cells);
+                if (!isOccupied(g, cell)) return cell;
+            }
+        }
+        int k = nextInt(g, free);
+        int base = g * words;
+        for (int w = 0; w < words; w++) {
+            long freeBits = ~occupied[base + w];
+            if (w == words - 1 && cells % 64 != 0) freeBits &= (1L << (cells % 64)) - 1;
+            int n = Long.bitCount(freeBits);
+            if (k < n) {
+                for (; k > 0; k--) freeBits &= freeBits - 1;
+                return w * 64 + Long.numberOfTrailingZeros(freeBits);
+            }
+            k -= n;
+        }
+        return NONE;
+    }
+
+    // GameRandom's SplitMix64 and bounded draw, on this game's slot of randomState.
+    private int nextInt(int g, int bound) {
+        while (true) {
+            long z = (randomState[g] += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z ^= z >>> 31;
+            long product = (z >>> 32) * bound;
+            if ((product & 0xffffffffL) >= (1L << 32) % bound) return (int) (product >>> 32);
+        }
+    }
+
+    private void writeBoard(int g) {
+        if (intObservations == null && floatObservations == null) return;
+        int ring = g * (ringMask + 1);
+        for (int cell = 0; cell < cells; cell++) {
+            writeCell(g, cell, isOccupied(g, cell) ? BODY : EMPTY);
+        }
+        writeCell(g, bodies[ring + heads[g]], HEAD);
+        if (food[g] != NONE) writeCell(g, food[g], FOOD);
+    }
+
+    private void writeCell(int g, int cell, int value) {
+        int index = g * cells + cell;
+        if (intObservations != null) intObservations.put(index, value);
+        if (floatObservations != null) floatObservations.put(index, value);
+    }
+
+    public int getCount() { return count; }
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public long getSteps() { return steps; }
+    public long getEpisodes() { return episodes; }
+
+    // Results of the last step, indexed by game; valid until the next step.
+    public float[] getRewards() { return rewards; }
+    public boolean[] getDone() { return done; }
+
+    public int getScore(int g) { return scores[g]; }
+    public int getLength(int g) { return lengths[g]; }
+    public int getHead(int g) { return bodies[g * (ringMask + 1) + heads[g]]; }
+    public int getFood(int g) { return food[g]; }
+    public Direction getDirection(int g) { return DIRECTIONS[directions[g]]; }
+
+    public double getMeanEpisodeScore() {
+        return episodes == 0 ? 0 : (double) episodeScoreSum / episodes;
+    }
+}
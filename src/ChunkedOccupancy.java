@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+// Sparse occupancy for very large worlds. The board is split into 64x64-cell chunks, each
+// a bitmap of 64 longs (one per row) allocated the first time one of its cells is occupied,
+// so memory follows the area the snake has explored rather than the world size. Free cells
+// are sampled by rejection, which takes about one attempt while the world is mostly empty.
+public class ChunkedOccupancy implements Occupancy {
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int SAMPLE_ATTEMPTS = 64;
+
+    private final int cols;
+    private final int rows;
+    private final int chunkCols;
+    private final long[][] chunks;
+    private int occupied;
+    private int allocatedChunks;
+
+    public ChunkedOccupancy(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkCols = (cols + CHUNK_SIZE - 1) >> CHUNK_BITS;
+        int chunkRows = (rows + CHUNK_SIZE - 1) >> CHUNK_BITS;
+        this.chunks = new long[chunkCols * chunkRows][];
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(chunks, null);
+        occupied = 0;
+        allocatedChunks = 0;
+    }
+
+    @Override
+    public boolean isOccupied(int cell) {
+        int x = cell % cols;
+        int y = cell / cols;
+        long[] chunk = chunks[(y >> CHUNK_BITS) * chunkCols + (x >> CHUNK_BITS)];
+        return chunk != null && (chunk[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    @Override
+    public void occupy(int cell) {
+        int x = cell % cols;
+        int y = cell / cols;
+        int index = (y >> CHUNK_BITS) * chunkCols + (x >> CHUNK_BITS);
+        long[] chunk = chunks[index];
+        if (chunk == null) {
+            chunk = chunks[index] = new long[CHUNK_SIZE];
+            allocatedChunks++;
+        }
+        long bit = 1L << x;
+        int row = y & (CHUNK_SIZE - 1);
+        if ((chunk[row] & bit) == 0) {
+            chunk[row] |= bit;
+            occupied++;
+        }
+    }
+
+    @Override
+    public void release(int cell) {
+        int x = cell % cols;
+        int y = cell / cols;
+        long[] chunk = chunks[(y >> CHUNK_BITS) * chunkCols + (x >> CHUNK_BITS)];
+        if (chunk == null) return;
+        long bit = 1L << x;
+        int row = y & (CHUNK_SIZE - 1);
+        if ((chunk[row] & bit) != 0) {
+            chunk[row] &= ~bit;
+            occupied--;
+        }
+    }
+
+    @Override
+    public int getFreeCount() {
+        return size() - occupied;
+    }
+
+    @Override
+    public int size() {
+        return cols * rows;
+    }
+
+    public int getAllocatedChunks() {
+        return allocatedChunks;
+    }
+
+    public long getAllocatedBytes() {
+        return (long) allocatedChunks * CHUNK_SIZE * Long.BYTES + (long) chunks.length * 4;
+    }
+
+    @Override
+    public int sampleFree(GameRandom random) {
+        return sampleFreeExcluding(GameEngine.NONE, random);
+    }
+
+    // After SAMPLE_ATTEMPTS misses (a nearly full world) falls back to scanning from a
+    // random cell, which is no longer exactly uniform but always terminates.
+    @Override
+    public int sampleFreeExcluding(int excluded, GameRandom random) {
+        int size = size();
+        int available = getFreeCount() - (excluded != GameEngine.NONE && !isOccupied(excluded) ? 1 : 0);
+        if (available <= 0) return GameEngine.NONE;
+        for (int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++) {
+            int cell = random.nextInt(size);
+            if (cell != excluded && !isOccupied(cell)) return cell;
+        }
+        int cell = random.nextInt(size);
+        while (cell == excluded || isOccupied(cell)) {
+            cell = cell + 1 == size ? 0 : cell + 1;
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,5 @@
+// Steers a snake in place of the keyboard. Returns the direction to request for the
+// next tick, or null to keep going straight.
+public interface Controller {
+    Direction nextDirection(GameEngine engine);
+}
@@ -0,0 +1,216 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Ring buffer of typed game events with one writer (the thread ticking the engines that
+// publish to it) and any number of subscribers, each reading at its own pace on its own
+// thread. Slots are preallocated columns of primitives, so publishing writes a few array
+// elements and a release store of the cursor: it never allocates, locks or waits.
+//
+// Each subscriber has a Cursor, the count of events it has consumed. The writer keeps
+// the slowest cursor it last saw and only re-reads the cursors when that one would be
+// lapped; if a subscriber is a whole ring behind, the event is dropped and counted
+// rather than holding up the tick. With no subscribers, events are simply overwritten.
+//
+// Columns per event: type, game (the engine's seed), tick, cell (NONE if none), value
+// and detail, as listed with each type below.
+public final class EventBus {
+    public static final int GAME_STARTED = 0;       // cell: head, value: tick delay
+    public static final int FOOD_EATEN = 1;         // cell: food, value: score after
+    public static final int POWER_UP_COLLECTED = 2; // cell: power-up, value: score, detail: effect
+    public static final int SPEED_CHANGED = 3;      // value: new tick delay in milliseconds
+    public static final int GAME_OVER = 4;          // cell: head, value: final score, detail: cause
+    public static final int TYPE_COUNT = 5;
+    static final String[] TYPE_NAMES = {"gameStarted", "foodEaten", "powerUpCollected", "speedChanged", "gameOver"};
+
+    public static final int EFFECT_SPEED_BOOST = 0;
+    public static final int EFFECT_MULTIPLIER = 1;
+    public static final int DEATH_SELF = 0; // ran into its own body
+    public static final int DEATH_EDGE = 1; // ran off the board
+    public static final int DEATH_WALL = 2; // ran into a level wall
+    static final String[] DEATH_NAMES = {"self", "edge", "wall"};
+
+    public interface Handler {
+        // endOfBatch is true on the last event available when the batch was taken, a
+        // good point to flush.
+        void onEvent(int type, long game, long tick, int cell, int value, int detail, boolean endOfBatch);
+    }
+
+    private final int mask;
+    private final byte[] types;
+    private final long[] games;
+    private final long[] ticks;
+    private final int[] cells;
+    private final int[] values;
+    private final byte[] details;
+    private final AtomicLong published = new AtomicLong(); // events written, released by the writer
+    private volatile Cursor[] cursors = new Cursor[0];
+    private long next;     // writer only: sequence of the next event
+    private long gate;     // writer only: slowest cursor when last read
+    private volatile long dropped;
+
+    public EventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        types = new byte[capacity];
+        games = new long[capacity];
+        ticks = new long[capacity];
+        cells = new int[capacity];
+        values = new int[capacity];
+        details = new byte[capacity];
+    }
+
+    // Writer: returns false (and drops the event) if a subscriber is a full ring behind.
+    public boolean publish(int type, long game, long tick, int cell, int value, int detail) {
+        long sequence = next;
+        if (sequence - gate > mask) {
+            gate = slowestCursor(sequence);
+            if (sequence - gate > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) sequence & mask;
+        types[slot] = (byte) type;
+        games[slot] = game;
+        ticks[slot] = tick;
+        cells[slot] = cell;
+        values[slot] = value;
+        details[slot] = (byte) detail;
+        next = sequence + 1;
+        published.setRelease(next);
+        return true;
+    }
+
+    private long slowestCursor(long sequence) {
+        long slowest = sequence;
+        for (Cursor cursor : cursors) {
+            slowest = Math.min(slowest, cursor.sequence.getAcquire());
+        }
+        return slowest;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // A cursor that starts at the next event published; poll it from one thread.
+    public synchronized Cursor newCursor() {
+        Cursor cursor = new Cursor(published.get());
+        cursors = Arrays.copyOf(cursors, cursors.length + 1);
+        cursors[cursors.length - 1] = cursor;
+        return cursor;
+    }
+
+    synchronized void remove(Cursor cursor) {
+        Cursor[] remaining = new Cursor[cursors.length];
+        int n = 0;
+        for (Cursor c : cursors) {
+            if (c != cursor) remaining[n++] = c;
+        }
+        cursors = Arrays.copyOf(remaining, n);
+    }
+
+    // Runs the handler on its own daemon thread for every event from now on.
+    public Subscription subscribe(String name, Handler handler) {
+        return new Subscription(name, newCursor(), handler);
+    }
+
+    public final class Cursor {
+        private final AtomicLong sequence; // events consumed, released by the reader
+
+        private Cursor(long start) {
+            sequence = new AtomicLong(start);
+        }
+
+        // Hands up to 'max' waiting events to the handler; returns how many.
+        public int poll(Handler handler, int max) {
+            long from = sequence.get();
+            long to = Math.min(published.getAcquire(), from + max);
+            for (long s = from; s < to; s++) {
+                int slot = (int) s & mask;
+                handler.onEvent(types[slot], games[slot], ticks[slot], cells[slot], values[slot], details[slot],
+                        s == to - 1);
+            }
+            sequence.setRelease(to);
+            return (int) (to - from);
+        }
+
+        public boolean isCaughtUp() {
+            return sequence.get() == published.getAcquire();
+        }
+
+        public long getLag() {
+            return published.getAcquire() - sequence.get();
+        }
+
+        public void close() {
+            remove(this);
+        }
+    }
+
+    // Spins briefly, then yields, then parks, so an idle subscriber costs little while a
+    // busy one answers quickly. The writer never signals; subscribers just look again.
+    static int idle(int idleRounds) {
+        if (idleRounds < 64) {
+            Thread.onSpinWait();
+        } else if (idleRounds < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(100_000);
+        }
+        return idleRounds + 1;
+    }
+
+    public static final class Subscription implements Runnable {
+        private static final int BATCH = 1024;
+
+        private final Cursor cursor;
+        private final Handler handler;
+        private final Thread thread;
+        private volatile boolean closing;
+
+        Subscription(String name, Cursor cursor, Handler handler) {
+            this.cursor = cursor;
+            this.handler = handler;
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            int idleRounds = 0;
+            while (true) {
+                if (cursor.poll(handler, BATCH) > 0) {
+                    idleRounds = 0;
+                } else if (closing) {
+                    return;
+                } else {
+                    idleRounds = idle(idleRounds);
+                }
+            }
+        }
+
+        public long getLag() {
+            return cursor.getLag();
+        }
+
+        // Stops once every event published before the call has been handled.
+        public void close() throws InterruptedException {
+            closing = true;
+            thread.join();
+            cursor.close();
+        }
+    }
+}
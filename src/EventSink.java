@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Subscriber that writes the events of one or more EventBuses to a columnar file on its
+// own "event-sink" thread. Events are gathered into blocks of up to BLOCK_EVENTS; a block
+// stores each column contiguously, with game and tick delta-coded against the row before,
+// so a block of a few thousand events from a handful of games takes a few bytes per event
+// and a reader can skip the columns it does not need.
+//
+// File format, little-endian:
+//   "SNKE" version(u16) 0(u16)
+//   blocks: count(i32) bytes(i32, of the columns that follow)
+//           types(u8 each) details(u8 each)
+//           games, ticks (zigzag varint deltas, the first from 0)
+//           cells, values (zigzag varints)
+// A partly filled block is written when the buses go quiet for FLUSH_NANOS and on close.
+//
+// Usage: java -cp out EventSink events.snke
+// prints a summary of a recorded file.
+public final class EventSink implements Runnable, EventBus.Handler {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'E'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    private static final int BLOCK_EVENTS = 8192;
+    private static final int MAX_EVENT_BYTES = 2 + 10 + 10 + 5 + 5;
+    private static final int POLL_BATCH = 1024;
+    private static final long FLUSH_NANOS = 1_000_000_000L;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final EventBus.Cursor[] cursors;
+    private final Thread thread;
+    private final byte[] types = new byte[BLOCK_EVENTS];
+    private final byte[] details = new byte[BLOCK_EVENTS];
+    private final long[] games = new long[BLOCK_EVENTS];
+    private final long[] ticks = new long[BLOCK_EVENTS];
+    private final int[] cells = new int[BLOCK_EVENTS];
+    private final int[] values = new int[BLOCK_EVENTS];
+    private final ByteBuffer out = ByteBuffer.allocateDirect(HEADER_SIZE + BLOCK_EVENTS * MAX_EVENT_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private int count;
+    private long lastFlush = System.nanoTime();
+    private boolean failed;
+    private volatile boolean closing;
+    private volatile long events;
+    private volatile long bytes;
+
+    public EventSink(Path path, EventBus... buses) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out.put(MAGIC).putShort((short) VERSION).putShort((short) 0).flip();
+        write();
+        cursors = new EventBus.Cursor[buses.length];
+        for (int i = 0; i < buses.length; i++) {
+            cursors[i] = buses[i].newCursor();
+        }
+        thread = new Thread(this, "event-sink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        int idleRounds = 0;
+        while (true) {
+            int polled = 0;
+            for (EventBus.Cursor cursor : cursors) {
+                polled += cursor.poll(this, POLL_BATCH);
+            }
+            if (polled > 0) {
+                idleRounds = 0;
+                continue;
+            }
+            if (closing) {
+                flush();
+                return;
+            }
+            if (count > 0 && System.nanoTime() - lastFlush > FLUSH_NANOS) {
+                flush();
+            }
+            idleRounds = EventBus.idle(idleRounds);
+        }
+    }
+
+    @Override
+    public void onEvent(int type, long game, long tick, int cell, int value, int detail, boolean endOfBatch) {
+        types[count] = (byte) type;
+        details[count] = (byte) detail;
+        games[count] = game;
+        ticks[count] = tick;
+        cells[count] = cell;
+        values[count] = value;
+        if (++count == BLOCK_EVENTS) flush();
+    }
+
+    private void flush() {
+        lastFlush = System.nanoTime();
+        if (count == 0) return;
+        out.clear();
+        out.position(HEADER_SIZE);
+        out.put(types, 0, count).put(details, 0, count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarint(zigzag(games[i] - previous));
+            previous = games[i];
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarint(zigzag(ticks[i] - previous));
+            previous = ticks[i];
+        }
+        for (int i = 0; i < count; i++) writeVarint(zigzag(cells[i]));
+        for (int i = 0; i < count; i++) writeVarint(zigzag(values[i]));
+        out.putInt(0, count).putInt(4, out.position() - HEADER_SIZE).flip();
+        int blockEvents = count;
+        count = 0;
+        if (failed) return;
+        write();
+        events += blockEvents;
+    }
+
+    private void write() {
+        try {
+            while (out.hasRemaining()) bytes += channel.write(out);
+        } catch (IOException e) {
+            System.err.println("Error writing events to " + path + ": " + e.getMessage());
+            failed = true; // keep draining the buses so the writers never fall a ring behind
+        }
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    // Call once the writers are done: writes every event published so far and closes the file.
+    public void close() throws IOException, InterruptedException {
+        closing = true;
+        thread.join();
+        for (EventBus.Cursor cursor : cursors) {
+            cursor.close();
+        }
+        channel.close();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Hands every event in a file to the handler, in order; endOfBatch marks a block's last.
+    public static long read(Path path, EventBus.Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            for (byte b : MAGIC) {
+                if (!map.hasRemaining() || map.get() != b) throw new IOException("Not an event file: " + path);
+            }
+            int version = map.getShort() & 0xffff;
+            if (version != VERSION) throw new IOException("Unsupported event file version " + version);
+            map.getShort();
+            long total = 0;
+            long[] games = new long[BLOCK_EVENTS];
+            long[] ticks = new long[BLOCK_EVENTS];
+            int[] cells = new int[BLOCK_EVENTS];
+            while (map.remaining() >= 8) {
+                int n = map.getInt();
+                int size = map.getInt();
+                if (n < 0 || n > BLOCK_EVENTS || size > map.remaining()) {
+                    throw new IOException("Corrupt event block at " + (map.position() - 8) + " in " + path);
+                }
+                int typesAt = map.position();
+                map.position(typesAt + 2 * n);
+                long previous = 0;
+                for (int i = 0; i < n; i++) games[i] = previous += unzigzag(readVarint(map));
+                previous = 0;
+                for (int i = 0; i < n; i++) ticks[i] = previous += unzigzag(readVarint(map));
+                for (int i = 0; i < n; i++) cells[i] = (int) unzigzag(readVarint(map));
+                for (int i = 0; i < n; i++) {
+                    handler.onEvent(map.get(typesAt + i), games[i], ticks[i], cells[i],
+                            (int) unzigzag(readVarint(map)), map.get(typesAt + n + i), i == n - 1);
+                }
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java EventSink events.snke");
+            System.exit(2);
+        }
+        long[] byType = new long[EventBus.TYPE_COUNT];
+        long[] deaths = new long[EventBus.DEATH_NAMES.length];
+        long[] totals = new long[2]; // final score, final tick
+        long read = read(Paths.get(args[0]), (type, game, tick, cell, value, detail, endOfBatch) -> {
+            if (type >= 0 && type < byType.length) byType[type]++;
+            if (type == EventBus.GAME_OVER) {
+                if (detail >= 0 && detail < deaths.length) deaths[detail]++;
+                totals[0] += value;
+                totals[1] += tick;
+            }
+        });
+        System.out.println(args[0] + ": " + read + " events");
+        for (int type = 0; type < byType.length; type++) {
+            System.out.printf("  %-18s %d%n", EventBus.TYPE_NAMES[type], byType[type]);
+        }
+        long ended = byType[EventBus.GAME_OVER];
+        if (ended > 0) {
+            System.out.printf(Locale.ROOT, "  %d games over: mean score %.2f, mean ticks %.1f, food %.2f and power-ups %.2f per game%n",
+                    ended, (double) totals[0] / ended, (double) totals[1] / ended,
+                    (double) byType[EventBus.FOOD_EATEN] / ended, (double) byType[EventBus.POWER_UP_COLLECTED] / ended);
+            for (int cause = 0; cause < deaths.length; cause++) {
+                System.out.printf(Locale.ROOT, "  died (%s) %.1f%%%n", EventBus.DEATH_NAMES[cause], 100.0 * deaths[cause] / ended);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+// Spatial index of food cells: the board is divided into BUCKET x BUCKET buckets, each
+// holding a small array of the food cells inside it, so "nearest food" only looks at
+// the buckets around a position. Buckets are allocated on first use. Reads are safe
+// from many threads as long as nothing is added or removed at the same time.
+public class FoodIndex {
+    private static final int BUCKET_BITS = 4;
+    private static final int BUCKET = 1 << BUCKET_BITS;
+
+    private final int cols;
+    private final int bucketCols;
+    private final int bucketRows;
+    private final int[][] buckets;
+    private final int[] counts;
+    private int size;
+
+    public FoodIndex(int cols, int rows) {
+        this.cols = cols;
+        this.bucketCols = (cols + BUCKET - 1) >> BUCKET_BITS;
+        this.bucketRows = (rows + BUCKET - 1) >> BUCKET_BITS;
+        this.buckets = new int[bucketCols * bucketRows][];
+        this.counts = new int[bucketCols * bucketRows];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private int bucketOf(int cell) {
+        return ((cell / cols) >> BUCKET_BITS) * bucketCols + ((cell % cols) >> BUCKET_BITS);
+    }
+
+    public boolean contains(int cell) {
+        int bucket = bucketOf(cell);
+        int[] cells = buckets[bucket];
+        for (int i = 0; i < counts[bucket]; i++) {
+            if (cells[i] == cell) return true;
+        }
+        return false;
+    }
+
+    public void add(int cell) {
+        int bucket = bucketOf(cell);
+        int[] cells = buckets[bucket];
+        if (cells == null) {
+            cells = buckets[bucket] = new int[4];
+        } else if (counts[bucket] == cells.length) {
+            cells = buckets[bucket] = Arrays.copyOf(cells, cells.length * 2);
+        }
+        cells[counts[bucket]++] = cell;
+        size++;
+    }
+
+    public boolean remove(int cell) {
+        int bucket = bucketOf(cell);
+        int[] cells = buckets[bucket];
+        for (int i = 0; i < counts[bucket]; i++) {
+            if (cells[i] == cell) {
+                cells[i] = cells[--counts[bucket]];
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Closest food by Manhattan distance within maxRings buckets of (x, y), or NONE.
+    // Ties go to the food found first, which depends only on the board contents.
+    public int nearest(int x, int y, int maxRings) {
+        int bx = x >> BUCKET_BITS;
+        int by = y >> BUCKET_BITS;
+        int best = GameEngine.NONE;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int ring = 0; ring <= maxRings; ring++) {
+            // Anything in this ring or beyond is at least (ring - 1) * BUCKET + 1 away
+            if (ring > 0 && (ring - 1) * BUCKET >= bestDistance) break;
+            for (int gy = by - ring; gy <= by + ring; gy++) {
+                if (gy < 0 || gy >= bucketRows) continue;
+                boolean edgeRow = gy == by - ring || gy == by + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int gx = bx - ring; gx <= bx + ring; gx += Math.max(1, step)) {
+                    if (gx < 0 || gx >= bucketCols) continue;
+                    int bucket = gy * bucketCols + gx;
+                    int[] cells = buckets[bucket];
+                    for (int i = 0; i < counts[bucket]; i++) {
+                        int cell = cells[i];
+                        int distance = Math.abs(cell % cols - x) + Math.abs(cell / cols - y);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = cell;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,31 @@
+// Game balance parameters. DEFAULT holds the values the game ships with.
+public final class GameConfig {
+    public static final GameConfig DEFAULT = new GameConfig(150, 100, 65, 30, 5000, 5, 10, 50);
+
+    public final int easyDelay;
+    public final int normalDelay;
+    public final int hardDelay;
+    public final int powerUpChancePercent; // chance of a power-up spawning when food is eaten
+    public final int effectDurationMillis; // lifetime of a power-up and of its effect
+    public final int speedUpEveryFood;     // the delay drops every this many points
+    public final int speedUpStepMillis;
+    public final int minDelay;
+
+    public GameConfig(int easyDelay, int normalDelay, int hardDelay, int powerUpChancePercent,
+                      int effectDurationMillis, int speedUpEveryFood, int speedUpStepMillis, int minDelay) {
+        this.easyDelay = easyDelay;
+        this.normalDelay = normalDelay;
+        this.hardDelay = hardDelay;
+        this.powerUpChancePercent = powerUpChancePercent;
+        this.effectDurationMillis = effectDurationMillis;
+        this.speedUpEveryFood = speedUpEveryFood;
+        this.speedUpStepMillis = speedUpStepMillis;
+        this.minDelay = minDelay;
+    }
+
+    @Override
+    public String toString() {
+        return powerUpChancePercent + "," + effectDurationMillis + "," + speedUpEveryFood + ","
+                + speedUpStepMillis + "," + minDelay;
+    }
+}
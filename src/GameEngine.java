@@ -0,0 +1,516 @@
+// Headless snake simulation. Cells are packed as y * cols + x; the body is a ring
+// buffer of packed cells so a move is push-head/drop-tail without allocation.
+// All randomness comes from one seeded GameRandom and all timers run on the game clock,
+// so a game is fully determined by its seed, start state and direction changes.
+public class GameEngine implements GameView {
+    public static final int NONE = -1;
+    private static final int INITIAL_BODY_PARTS = 3;
+    public static final int MAX_SIZE = 10_000;
+    // Timer kinds on the timing wheel; the payload of POWER_UP_EXPIRES is the power-up's cell
+    static final int POWER_UP_EXPIRES = 0;
+    static final int SPEED_BOOST_ENDS = 1;
+    static final int MULTIPLIER_ENDS = 2;
+    private static final int TIMER_SLOTS = 256;
+
+    private final int cols;
+    private final int rows;
+    private final Occupancy grid;
+    private final Level level; // walls and start position, null for an open board
+    private PagedInts body = new PagedInts(64);
+    private int bodyMask = 63;     // body.size() - 1
+    private int headCell = NONE;   // body cell at head, read every tick
+    private int head; // ring index of the head segment
+    private int length;
+    private int removedTail = NONE; // cell vacated by the last move, NONE while growing
+    private int food = NONE;
+    private int powerUp = NONE;
+    private int bodyParts = INITIAL_BODY_PARTS;
+    private int foodEaten;
+    private Direction direction = Direction.RIGHT;
+    private Direction pendingDirection = null; // To handle rapid key presses
+    private boolean running = false;
+    private boolean collided = false;
+    private int deathCause; // EventBus.DEATH_*, set with collided
+    private final GameConfig config;
+    private final int initialDelay;
+    private int currentDelay;
+    private long tickCount;
+    private long gameTime; // milliseconds of play: the sum of the tick delays so far
+    private final TimingWheel timers = new TimingWheel(TIMER_SLOTS); // keyed on tickCount
+    private final TimingWheel.Handler onTimer = this::onTimer;
+    private int powerUpExpiry = TimingWheel.NONE; // timer of the power-up on the board
+    private int speedBoosts;  // collected speed boosts still running; each ends on its own timer
+    private int multipliers;  // the same for score multipliers
+    private final GameRandom random = new GameRandom(0);
+    private final GameRandom seeds = new GameRandom(System.nanoTime()); // seeds for reset()
+    private long seed;
+    private GameListener listener = new GameListener() {};
+    private ReplayRecorder recorder;
+    private Autosave autosave;
+    private EventBus events;
+
+    public GameEngine(int cols, int rows, int gameDelay) {
+        this(cols, rows, gameDelay, GameConfig.DEFAULT);
+    }
+
+    public GameEngine(int cols, int rows, int gameDelay, GameConfig config) {
+        this(cols, rows, gameDelay, config, null);
+    }
+
+    // A board shaped by a level: its walls are occupied for the whole game, so moving into
+    // one is a collision and nothing spawns on one.
+    public GameEngine(Level level, int gameDelay, GameConfig config) {
+        this(level.getCols(), level.getRows(), gameDelay, config, level);
+    }
+
+    private GameEngine(int cols, int rows, int gameDelay, GameConfig config, Level level) {
+        if (cols < 8 || rows < 2 || cols > MAX_SIZE || rows > MAX_SIZE) {
+            throw new IllegalArgumentException("Board must be between 8x2 and " + MAX_SIZE + "x" + MAX_SIZE + ": " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.grid = Occupancy.forBoard(cols, rows);
+        this.level = level;
+        this.initialDelay = gameDelay;
+        this.currentDelay = gameDelay;
+        this.config = config;
+    }
+
+    public void setListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    // Records every game started from now on; null stops recording.
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Publishes this engine's game events to the bus from now on; null stops publishing.
+    // The bus has a single writer, so engines sharing one must be ticked by one thread.
+    public void setEventBus(EventBus events) {
+        this.events = events;
+    }
+
+    // Checkpoints running games through autosave; null stops checkpointing.
+    public void setAutosave(Autosave autosave) {
+        this.autosave = autosave;
+    }
+
+    public void reset() {
+        reset(seeds.nextLong());
+    }
+
+    public void reset(long seed) {
+        int start = level != null ? level.getStartCell() : cell(5, rows / 2);
+        int[] cells = new int[INITIAL_BODY_PARTS];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = start - i;
+        }
+        reset(seed, cells, cells.length, Direction.RIGHT);
+    }
+
+    public void reset(int[] cells, int count, Direction initialDirection) {
+        reset(seeds.nextLong(), cells, count, initialDirection);
+    }
+
+    // Starts a game with the given body, head first.
+    public void reset(long seed, int[] cells, int count, Direction initialDirection) {
+        this.seed = seed;
+        random.setState(seed);
+        currentDelay = initialDelay;
+        length = 0;
+        head = 0;
+        headCell = NONE;
+        removedTail = NONE;
+        grid.clear();
+        occupyWalls();
+        bodyParts = count;
+        for (int i = count - 1; i >= 0; i--) {
+            grid.occupy(cells[i]);
+            pushHead(cells[i]);
+        }
+        direction = initialDirection;
+        pendingDirection = null;
+        newFood();
+        running = true;
+        collided = false;
+        foodEaten = 0;
+        powerUp = NONE;
+        tickCount = 0;
+        gameTime = 0;
+        timers.reset(0);
+        powerUpExpiry = TimingWheel.NONE;
+        speedBoosts = 0;
+        multipliers = 0;
+        if (recorder != null) {
+            recorder.begin(this);
+        }
+        if (events != null) {
+            events.publish(EventBus.GAME_STARTED, seed, 0, headCell, getTickDelay(), 0);
+        }
+    }
+
+    public void tick() {
+        if (!running) return;
+        tickCount++;
+        gameTime += getTickDelay();
+        if (Telemetry.enabled) {
+            tracedMoveAndCheck();
+        } else {
+            move();
+            checkFood();
+            checkPowerUp();
+            checkCollisions();
+        }
+        if (autosave != null && running && tickCount % autosave.getInterval() == 0) {
+            autosave.offer(capture());
+        }
+    }
+
+    // The same steps as tick(), wrapped in JFR events for telemetry.
+    private void tracedMoveAndCheck() {
+        Telemetry.MoveEvent moveEvent = new Telemetry.MoveEvent();
+        moveEvent.begin();
+        move();
+        moveEvent.length = length;
+        moveEvent.commit();
+        checkFood();
+        checkPowerUp();
+        Telemetry.CollisionEvent collisionEvent = new Telemetry.CollisionEvent();
+        collisionEvent.begin();
+        checkCollisions();
+        collisionEvent.collided = collided;
+        collisionEvent.commit();
+    }
+
+    // Copies the state for saving without copying the body or, on a dense board, the free
+    // index order (which decides where food appears next): both are paged and shared with
+    // the capture, and later moves copy only the pages they write.
+    public GameState capture() {
+        PagedInts freeOrder = null;
+        int freeCount = 0;
+        if (grid instanceof OccupancyGrid) {
+            freeOrder = ((OccupancyGrid) grid).copyFreeOrder();
+            freeCount = grid.getFreeCount();
+        }
+        return new GameState(cols, rows, initialDelay, config, seed, random.getState(), direction,
+                pendingDirection, running, bodyParts, foodEaten, food, powerUp, currentDelay, tickCount,
+                gameTime, timers.export(), body.snapshot(), head, length, freeOrder, freeCount);
+    }
+
+    // Continues a captured game; the board size must match.
+    public void restore(GameState state) {
+        if (state.cols != cols || state.rows != rows) {
+            throw new IllegalArgumentException("Saved game is " + state.cols + "x" + state.rows
+                    + ", board is " + cols + "x" + rows);
+        }
+        seed = state.seed;
+        random.setState(state.randomState);
+        body = new PagedInts(state.body);
+        bodyMask = body.size() - 1;
+        head = state.head;
+        length = state.length;
+        headCell = length == 0 ? NONE : getBodyCell(0);
+        removedTail = NONE;
+        grid.clear();
+        occupyWalls();
+        for (int i = length - 1; i >= 0; i--) {
+            grid.occupy(getBodyCell(i));
+        }
+        if (state.freeOrder != null && grid instanceof OccupancyGrid) {
+            ((OccupancyGrid) grid).restoreFreeOrder(state.freeOrder, state.freeCount);
+        }
+        direction = state.direction;
+        pendingDirection = state.pendingDirection;
+        running = state.running;
+        collided = false;
+        bodyParts = state.bodyParts;
+        foodEaten = state.foodEaten;
+        food = state.food;
+        powerUp = state.powerUp;
+        currentDelay = state.currentDelay;
+        tickCount = state.tickCount;
+        gameTime = state.gameTime;
+        timers.restore(tickCount, state.timers);
+        powerUpExpiry = TimingWheel.NONE;
+        speedBoosts = 0;
+        multipliers = 0;
+        for (int i = 0; i < state.timers.length; i += 2) {
+            int kind = (int) (state.timers[i + 1] >> 32);
+            if (kind == SPEED_BOOST_ENDS) speedBoosts++;
+            if (kind == MULTIPLIER_ENDS) multipliers++;
+        }
+        if (powerUp != NONE) {
+            // the handle is not saved; look the power-up's timer up by its payload
+            powerUpExpiry = timers.find(POWER_UP_EXPIRES, powerUp);
+        }
+    }
+
+    private void occupyWalls() {
+        if (level == null) return;
+        for (int i = 0; i < level.getWallCount(); i++) {
+            grid.occupy(level.getWall(i));
+        }
+    }
+
+    public void newFood() {
+        food = grid.sampleFree(random);
+    }
+
+    public void newPowerUp() {
+        if (random.nextInt(100) < config.powerUpChancePercent) {
+            timers.cancel(powerUpExpiry); // a new power-up replaces the one on the board
+            powerUp = grid.sampleFreeExcluding(food, random);
+            powerUpExpiry = powerUp == NONE ? TimingWheel.NONE
+                    : scheduleEffectEnd(POWER_UP_EXPIRES, powerUp);
+        }
+    }
+
+    public void move() {
+        if (length == 0) return;
+
+        // Apply pending direction if valid
+        if (pendingDirection != null && isValidDirectionChange(direction, pendingDirection)) {
+            if (recorder != null && pendingDirection != direction) {
+                recorder.recordDirection(tickCount, pendingDirection);
+            }
+            direction = pendingDirection;
+            pendingDirection = null;
+        }
+
+        int rawX = x(headCell) + direction.dx;
+        int rawY = y(headCell) + direction.dy;
+        int x = Math.max(0, Math.min(rawX, cols - 1));
+        int y = Math.max(0, Math.min(rawY, rows - 1));
+
+        // If we've eaten food, keep the tail so the snake grows by one segment.
+        // The tail leaves before the head arrives, so chasing the tail is allowed.
+        removedTail = NONE;
+        if (length >= bodyParts) {
+            removedTail = getBodyCell(length - 1);
+            grid.release(removedTail);
+            length--;
+        }
+        int newHead = cell(x, y);
+        if (grid.isOccupied(newHead)) {
+            collided = true;
+            // the edge clamp keeps the head in place, where the neck is
+            deathCause = x != rawX || y != rawY ? EventBus.DEATH_EDGE
+                    : isWall(newHead) ? EventBus.DEATH_WALL : EventBus.DEATH_SELF;
+        } else {
+            grid.occupy(newHead);
+        }
+        pushHead(newHead);
+    }
+
+    public boolean isValidDirectionChange(Direction current, Direction newDir) {
+        // Prevent 180-degree turns (e.g., RIGHT to LEFT)
+        return !current.isOpposite(newDir);
+    }
+
+    public void checkFood() {
+        if (food != NONE && length > 0 && headCell == food) {
+            bodyParts++;
+            foodEaten += multipliers > 0 ? 2 : 1;
+            if (events != null) events.publish(EventBus.FOOD_EATEN, seed, tickCount, food, foodEaten, 0);
+            newFood();
+            newPowerUp();
+            listener.onFoodEaten();
+            if (foodEaten % config.speedUpEveryFood == 0 && currentDelay > config.minDelay) {
+                currentDelay = Math.max(config.minDelay, currentDelay - config.speedUpStepMillis);
+                publishSpeed();
+            }
+        }
+    }
+
+    // Collects a power-up under the head, then runs the timers due this tick. Each effect
+    // has its own timer, so collecting one neither resets nor ends another; collecting the
+    // same kind again while it runs stacks it, keeping it on until the last one ends.
+    public void checkPowerUp() {
+        if (powerUp != NONE && length > 0 && headCell == powerUp) {
+            listener.onPowerUpCollected();
+            timers.cancel(powerUpExpiry);
+            powerUpExpiry = TimingWheel.NONE;
+            powerUp = NONE;
+            boolean speedBoost = random.nextBoolean();
+            if (events != null) {
+                events.publish(EventBus.POWER_UP_COLLECTED, seed, tickCount, headCell, foodEaten,
+                        speedBoost ? EventBus.EFFECT_SPEED_BOOST : EventBus.EFFECT_MULTIPLIER);
+            }
+            if (speedBoost) {
+                speedBoosts++;
+                scheduleEffectEnd(SPEED_BOOST_ENDS, 0);
+                if (speedBoosts == 1) publishSpeed();
+            } else {
+                multipliers++;
+                scheduleEffectEnd(MULTIPLIER_ENDS, 0);
+            }
+        }
+        timers.advance(onTimer);
+    }
+
+    private void onTimer(int kind, int payload) {
+        switch (kind) {
+            case POWER_UP_EXPIRES:
+                if (powerUp == payload) {
+                    powerUp = NONE;
+                    powerUpExpiry = TimingWheel.NONE;
+                }
+                break;
+            case SPEED_BOOST_ENDS:
+                speedBoosts--;
+                if (speedBoosts == 0) publishSpeed();
+                break;
+            case MULTIPLIER_ENDS:
+                multipliers--;
+                break;
+        }
+    }
+
+    private void publishSpeed() {
+        if (events != null) events.publish(EventBus.SPEED_CHANGED, seed, tickCount, NONE, getTickDelay(), 0);
+    }
+
+    // Ends an effect started this tick on the first tick more than effectDurationMillis
+    // of game time later, at the pace from now on. The wheel is still on the previous
+    // tick until checkPowerUp advances it, so the deadline is taken from tickCount.
+    private int scheduleEffectEnd(int kind, int payload) {
+        return timers.scheduleAt(tickCount + config.effectDurationMillis / getTickDelay() + 1, kind, payload);
+    }
+
+    public void checkCollisions() {
+        if (collided) {
+            running = false;
+            if (recorder != null) {
+                recorder.end(this);
+            }
+            if (autosave != null) {
+                autosave.discard(); // nothing left to resume
+            }
+            if (events != null) {
+                events.publish(EventBus.GAME_OVER, seed, tickCount, headCell, foodEaten, deathCause);
+            }
+            listener.onGameOver(foodEaten);
+        }
+    }
+
+    public void setPendingDirection(Direction newDir) {
+        if (running && isValidDirectionChange(direction, newDir)) {
+            pendingDirection = newDir;
+        }
+    }
+
+    private void pushHead(int c) {
+        if (length == body.size()) {
+            PagedInts grown = new PagedInts(body.size() * 2);
+            for (int i = 0; i < length; i++) {
+                grown.set(i, getBodyCell(i));
+            }
+            body = grown;
+            bodyMask = body.size() - 1;
+            head = 0;
+        }
+        head = (head - 1) & bodyMask;
+        body.set(head, c);
+        headCell = c;
+        length++;
+    }
+
+    public int cell(int x, int y) {
+        return y * cols + x;
+    }
+
+    @Override
+    public int x(int cell) {
+        return cell % cols;
+    }
+
+    @Override
+    public int y(int cell) {
+        return cell / cols;
+    }
+
+    // Segment 0 is the head, getBodyLength() - 1 the tail.
+    public int getBodyCell(int i) {
+        return body.get((head + i) & bodyMask);
+    }
+
+    public int getBodyLength() {
+        return length;
+    }
+
+    @Override
+    public int getHead() {
+        return length == 0 ? NONE : headCell;
+    }
+
+    public int getRemovedTail() {
+        return removedTail;
+    }
+
+    @Override
+    public int getDirtyCellCount() {
+        return removedTail == NONE ? 0 : 1;
+    }
+
+    @Override
+    public int getDirtyCell(int i) {
+        return removedTail;
+    }
+
+    @Override
+    public boolean isOccupied(int cell) {
+        return grid.isOccupied(cell);
+    }
+
+    // Only boards small enough for dense storage can be snapshotted.
+    public long[] copyOccupancy() {
+        if (!(grid instanceof OccupancyGrid)) {
+            throw new UnsupportedOperationException("Board too large to snapshot: " + cols + "x" + rows);
+        }
+        return ((OccupancyGrid) grid).copyBits();
+    }
+
+    public boolean isLargeWorld() {
+        return grid instanceof ChunkedOccupancy;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public boolean isWall(int cell) {
+        return level != null && level.isWall(cell);
+    }
+
+    public Occupancy getOccupancy() {
+        return grid;
+    }
+
+    @Override public int getCols() { return cols; }
+    @Override public int getRows() { return rows; }
+    @Override public int getFood() { return food; }
+    @Override public int getPowerUp() { return powerUp; }
+    @Override public int getFoodEaten() { return foodEaten; }
+    public int getBodyParts() { return bodyParts; }
+    public Direction getDirection() { return direction; }
+    @Override public boolean isRunning() { return running; }
+    public int getInitialDelay() { return initialDelay; }
+    public int getCurrentDelay() { return currentDelay; }
+    public long getSeed() { return seed; }
+    public long getTickCount() { return tickCount; }
+    public long getGameTime() { return gameTime; }
+    public GameConfig getConfig() { return config; }
+    @Override public boolean isSpeedBoostActive() { return speedBoosts > 0; }
+    public boolean isScoreMultiplierActive() { return multipliers > 0; }
+    public int getSpeedBoosts() { return speedBoosts; }
+    public int getMultipliers() { return multipliers; }
+    public int getTimerCount() { return timers.size(); }
+
+    // Delay the driver should wait before the next tick; at least 1 ms, which the soak
+    // test plays at.
+    public int getTickDelay() {
+        return speedBoosts > 0 ? Math.max(1, currentDelay / 2) : currentDelay;
+    }
+}
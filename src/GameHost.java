@@ -0,0 +1,448 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Hosts many independent game sessions in one process on a fixed set of worker threads,
+// one per core, instead of a Swing Timer or thread per game. Each session belongs to one
+// worker, which keeps its sessions in a heap ordered by next tick deadline (like
+// GameServer's schedule), ticks whatever is due and sleeps until the earliest deadline.
+// A session ticks at its own engine's pace: the next deadline is taken from
+// getTickDelay() after every tick, so speed-ups and boosts apply at once. A session more
+// than MAX_CATCH_UP_TICKS behind drops its backlog rather than delaying the rest.
+//
+// Isolation: a tick that throws closes that session only. A session with SLOW_TICKS of
+// its last 32 ticks over SLOW_TICK_NANOS is moved to a slow lane, a small set of
+// separate threads, so one slow game cannot make the other sessions on its worker late,
+// whether it is slow every tick or only now and then. Slow sessions are only spread over
+// the slow lanes, not isolated from each other: those sharing a lane still delay one
+// another.
+//
+// Every session keeps a compact histogram of how late its ticks started, for its own
+// p99; each worker also keeps a full Histogram over all of its sessions.
+//
+// Usage: java -cp out GameHost [--sessions 10000] [--workers N] [--board 24] [--delay 100]
+//            [--seconds 30] [--slow 0] [--warm-up 5]
+// runs that many greedy-player sessions (restarting when they die) and, after the warm-up,
+// reports lateness for the following seconds;
+// --slow makes that many of them slow, to show the slow lane at work: half take 5 ms every
+// tick, the other half 20 ms every other tick.
+public class GameHost {
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final long SLOW_TICK_NANOS = 2_000_000L;
+    private static final int SLOW_TICKS = 4; // slow ticks out of the last 32 before a session moves
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+    private static final int INPUT_CAPACITY = 16;
+
+    private final Worker[] workers;
+    private final Worker[] slowLanes;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final boolean restartOnGameOver;
+    private volatile boolean stopped;
+    private volatile int epoch; // bumped by resetLateness()
+
+    // Lateness in microseconds, in log-linear buckets like Histogram's but with four per
+    // power of two and 32 bit counts, about 450 bytes a session. Values are off by at
+    // most a quarter; one writer.
+    static final class Lateness {
+        private static final int SUB_BITS = 2;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (32 - SUB_BITS + 1) * SUB;
+
+        private final int[] counts = new int[BUCKETS];
+        private int count;
+        private long max;
+
+        void record(long micros) {
+            micros = Math.max(0, Math.min(micros, Integer.MAX_VALUE));
+            counts[index(micros)]++;
+            count++;
+            if (micros > max) max = micros;
+        }
+
+        private static int index(long value) {
+            if (value < SUB) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return exponent * SUB + (int) (value >>> exponent);
+        }
+
+        private static long highestValue(int index) {
+            if (index < SUB) return index;
+            int exponent = index / SUB - 1;
+            long sub = index % SUB + SUB;
+            return ((sub + 1) << exponent) - 1;
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+
+        void reset() {
+            Arrays.fill(counts, 0);
+            count = 0;
+            max = 0;
+        }
+
+        int getCount() { return count; }
+        long getMax() { return max; }
+    }
+
+    public final class Session {
+        private final int id;
+        private final GameEngine engine;
+        private final Controller controller; // null: steered through steer()
+        private final InputQueue input = new InputQueue(INPUT_CAPACITY);
+        private final Lateness lateness = new Lateness();
+        private long nextTick;
+        private int slowTicks; // the last 32 ticks, bit i set if the tick i ticks ago was slow
+        private int epoch = -1; // the host's epoch of the lateness histogram; -1 before the first tick
+        private volatile boolean closed;
+        private volatile Worker worker;
+        private long ticks;
+        private long droppedTicks;
+        private long games = 1;
+        private String error;
+
+        Session(GameEngine engine, Controller controller) {
+            this.id = ids.getAndIncrement();
+            this.engine = engine;
+            this.controller = controller;
+        }
+
+        // From one thread per session, e.g. the connection that plays it.
+        public void steer(Direction direction) {
+            input.offer(direction, System.nanoTime());
+        }
+
+        public void close() {
+            closed = true;
+        }
+
+        public int getId() { return id; }
+        public boolean isClosed() { return closed; }
+        public boolean isQuarantined() { return worker.slowLane; }
+        public String getError() { return error; }
+
+        // Statistics are written by the session's worker; read them once the host has
+        // stopped, or accept values a tick or so old.
+        public long getTicks() { return ticks; }
+        public long getDroppedTicks() { return droppedTicks; }
+        public long getGames() { return games; }
+        public long getLatenessMicros(double percentile) { return lateness.percentile(percentile); }
+        public long getMaxLatenessMicros() { return lateness.getMax(); }
+
+        // Worker: runs one tick; returns how long it took.
+        long tick() {
+            long start = System.nanoTime();
+            Direction direction;
+            if (controller != null) {
+                input.clear();
+                direction = controller.nextDirection(engine);
+            } else {
+                direction = input.poll(engine);
+            }
+            if (direction != null) {
+                engine.setPendingDirection(direction);
+            }
+            engine.tick();
+            ticks++;
+            if (!engine.isRunning() && restartOnGameOver) {
+                engine.reset();
+                games++;
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final Thread thread;
+        private final boolean slowLane;
+        private final PriorityQueue<Session> schedule = new PriorityQueue<>((a, b) -> Long.compare(a.nextTick, b.nextTick));
+        private final ConcurrentLinkedQueue<Session> arrivals = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger sessions = new AtomicInteger();
+        private final Histogram lateness = new Histogram(); // ns, all of this worker's ticks
+        private int epoch = -1;
+        private volatile long ticks;
+        private volatile long busyNanos;
+        private volatile long quarantined;
+
+        Worker(String name, boolean slowLane) {
+            this.slowLane = slowLane;
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void add(Session session) {
+            sessions.incrementAndGet();
+            session.worker = this;
+            arrivals.add(session);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                Session arrived;
+                while ((arrived = arrivals.poll()) != null) {
+                    schedule.add(arrived);
+                }
+                Session session = schedule.peek();
+                long now = System.nanoTime();
+                if (session == null || session.nextTick > now) {
+                    long wait = session == null ? MAX_PARK_NANOS : Math.min(MAX_PARK_NANOS, session.nextTick - now);
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                schedule.poll();
+                if (session.closed) {
+                    sessions.decrementAndGet();
+                    continue;
+                }
+                run(session, now);
+            }
+        }
+
+        private void run(Session session, long now) {
+            long late = now - session.nextTick;
+            // A new epoch clears the histograms here, on the worker that writes them. Each
+            // session starts at -1, so this branch is warm long before a reset.
+            int current = GameHost.this.epoch;
+            if (session.epoch != current) {
+                session.lateness.reset();
+                session.epoch = current;
+            }
+            if (epoch != current) {
+                lateness.reset();
+                epoch = current;
+            }
+            session.lateness.record(late / 1000);
+            lateness.record(late);
+            long took;
+            try {
+                took = session.tick();
+            } catch (RuntimeException e) {
+                session.error = e.toString();
+                session.closed = true;
+                sessions.decrementAndGet();
+                System.err.println("Closed session " + session.id + ": " + e);
+                return;
+            }
+            ticks++;
+            busyNanos += took;
+            long step = session.engine.getTickDelay() * 1_000_000L;
+            session.nextTick += step;
+            if (now - session.nextTick > MAX_CATCH_UP_TICKS * step) {
+                session.droppedTicks += (now - session.nextTick) / step;
+                session.nextTick = now + step;
+            }
+            if (!session.engine.isRunning()) {
+                session.closed = true; // over and not restarted
+                sessions.decrementAndGet();
+                return;
+            }
+            session.slowTicks = session.slowTicks << 1 | (took > SLOW_TICK_NANOS ? 1 : 0);
+            if (!slowLane && Integer.bitCount(session.slowTicks) >= SLOW_TICKS) {
+                sessions.decrementAndGet();
+                quarantined++;
+                leastLoaded(slowLanes).add(session);
+                return;
+            }
+            schedule.add(session);
+        }
+    }
+
+    public GameHost(int workerCount, boolean restartOnGameOver) {
+        this.restartOnGameOver = restartOnGameOver;
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker("host-" + i, false);
+        }
+        slowLanes = new Worker[Math.max(1, workerCount / 4)];
+        for (int i = 0; i < slowLanes.length; i++) {
+            slowLanes[i] = new Worker("host-slow-" + i, true);
+        }
+    }
+
+    public void start() {
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        for (Worker worker : slowLanes) {
+            worker.thread.start();
+        }
+    }
+
+    public void stop() throws InterruptedException {
+        stopped = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+            worker.thread.join();
+        }
+        for (Worker worker : slowLanes) {
+            LockSupport.unpark(worker.thread);
+            worker.thread.join();
+        }
+    }
+
+    // Adds a running game to the worker with the fewest sessions; its first tick is due
+    // one tick delay from now.
+    public Session open(GameEngine engine, Controller controller) {
+        return open(engine, controller, 0);
+    }
+
+    // The same with the first tick 'phaseNanos' later, to spread sessions opened together.
+    public Session open(GameEngine engine, Controller controller, long phaseNanos) {
+        Session session = new Session(engine, controller);
+        session.nextTick = System.nanoTime() + engine.getTickDelay() * 1_000_000L + phaseNanos;
+        leastLoaded(workers).add(session);
+        return session;
+    }
+
+    private static Worker leastLoaded(Worker[] workers) {
+        Worker least = workers[0];
+        for (Worker worker : workers) {
+            if (worker.sessions.get() < least.sessions.get()) least = worker;
+        }
+        return least;
+    }
+
+    // Starts lateness over: every session and worker clears its histogram on its next tick,
+    // e.g. to leave out the start-up burst of a load test.
+    public void resetLateness() {
+        epoch++;
+    }
+
+    public int getSessionCount() {
+        int count = getSlowLaneCount();
+        for (Worker worker : workers) count += worker.sessions.get();
+        return count;
+    }
+
+    public int getSlowLaneCount() {
+        int count = 0;
+        for (Worker worker : slowLanes) count += worker.sessions.get();
+        return count;
+    }
+
+    public long getTicks() {
+        long ticks = 0;
+        for (Worker worker : workers) ticks += worker.ticks;
+        for (Worker worker : slowLanes) ticks += worker.ticks;
+        return ticks;
+    }
+
+    // Lateness over all sessions; the workers' histograms are read without locking, so
+    // this may be off by a tick or two while the host runs.
+    public String getStats() {
+        Histogram all = new Histogram();
+        StringBuilder busy = new StringBuilder();
+        for (Worker worker : workers) {
+            all.add(worker.lateness);
+            busy.append(busy.length() == 0 ? "" : " ").append(worker.busyNanos / 1_000_000).append("ms");
+        }
+        return String.format("sessions=%d (slow lane %d, quarantined %d) ticks=%d busy=[%s] late %s",
+                getSessionCount(), getSlowLaneCount(), quarantinedCount(), getTicks(), busy,
+                all.summary("ms", 1e6));
+    }
+
+    private long quarantinedCount() {
+        long count = 0;
+        for (Worker worker : workers) count += worker.quarantined;
+        return count;
+    }
+
+    // A controller that takes 'nanos' of CPU on every 'period'th decision; stands in for a
+    // slow game.
+    private static Controller slow(Controller inner, long nanos, int period) {
+        long[] decisions = new long[1];
+        return engine -> {
+            if (decisions[0]++ % period != 0) return inner.nextDirection(engine);
+            long end = System.nanoTime() + nanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return inner.nextDirection(engine);
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = 10_000;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        int delay = GameConfig.DEFAULT.normalDelay;
+        int seconds = 30;
+        int slow = 0;
+        int warmUp = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sessions": sessions = Integer.parseInt(args[++i]); break;
+                case "--workers": workers = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--board": board = Integer.parseInt(args[++i]); break;
+                case "--delay": delay = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--slow": slow = Integer.parseInt(args[++i]); break;
+                case "--warm-up": warmUp = Integer.parseInt(args[++i]); break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+        GameHost host = new GameHost(workers, true);
+        host.start();
+        GameRandom random = new GameRandom(System.nanoTime());
+        List<Session> all = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            GameEngine engine = new GameEngine(board, board, delay);
+            engine.reset();
+            Controller player = i >= slow ? new GreedyController()
+                    : i % 2 == 0 ? slow(new GreedyController(), 5_000_000L, 1)
+                    : slow(new GreedyController(), 20_000_000L, 2);
+            all.add(host.open(engine, player, random.nextInt(delay) * 1_000_000L));
+        }
+        System.out.printf("Hosting %d sessions (%d slow) on %d workers at %d ms per tick, measuring after %d s%n",
+                sessions, slow, workers, delay, warmUp);
+        Thread.sleep(warmUp * 1000L);
+        host.resetLateness();
+        long start = System.nanoTime();
+        long startTicks = host.getTicks();
+        for (int s = 5; s <= seconds; s += 5) {
+            Thread.sleep(5000);
+            System.out.println("Host: " + host.getStats());
+        }
+        host.stop();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // Per-session p99 lateness, for the sessions that were not slow themselves
+        long[] p99 = new long[all.size() - Math.min(slow, all.size())];
+        long games = 0;
+        long dropped = 0;
+        for (int i = 0; i < all.size(); i++) {
+            Session session = all.get(i);
+            games += session.getGames();
+            dropped += session.getDroppedTicks();
+            if (i >= slow) p99[i - slow] = session.getLatenessMicros(99);
+        }
+        Arrays.sort(p99);
+        System.out.printf(Locale.ROOT, "%.0f ticks/s, %d games, %d dropped ticks%n", (host.getTicks() - startTicks) / elapsed, games, dropped);
+        if (p99.length > 0) {
+            System.out.printf(Locale.ROOT, "Per-session p99 lateness (ms): median %.2f, p90 %.2f, p99 %.2f, worst %.2f%n",
+                    p99[p99.length / 2] / 1e3, p99[(int) (p99.length * 0.9)] / 1e3,
+                    p99[(int) (p99.length * 0.99)] / 1e3, p99[p99.length - 1] / 1e3);
+        }
+        for (int i = 0; i < Math.min(slow, all.size()); i++) {
+            Session session = all.get(i);
+            System.out.printf(Locale.ROOT, "Slow session %d: %s, %d ticks, p99 lateness %.2f ms%n", session.getId(),
+                    session.isQuarantined() ? "quarantined" : "not quarantined", session.getTicks(),
+                    session.getLatenessMicros(99) / 1e3);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+public interface GameListener {
+    default void onFoodEaten() {}
+
+    default void onPowerUpCollected() {}
+
+    default void onGameOver(int score) {}
+}
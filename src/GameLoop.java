@@ -0,0 +1,181 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Runs an engine on its own thread with a fixed timestep taken from the engine's tick
+// delay. Late ticks are caught up (up to MAX_CATCH_UP_TICKS at once), and after each
+// batch an immutable GameSnapshot is handed to the publisher. Between ticks onFrame is
+// invoked at roughly FRAME_NANOS so the view can interpolate.
+public class GameLoop implements Runnable {
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    private static final long SPIN_NANOS = 200_000L; // busy-wait the tail end of each sleep
+    private static final int INPUT_CAPACITY = 16;
+
+    private final GameEngine engine;
+    private final Consumer<GameSnapshot> publisher;
+    private final Runnable onFrame;
+    private final Thread thread;
+    private volatile boolean stopped = false;
+    private final InputQueue input = new InputQueue(INPUT_CAPACITY);
+    private volatile Controller controller = null;
+    private volatile GameSnapshot snapshot;
+    private int[] dirty = new int[16];
+    private int dirtyCount;
+    private long sequence;
+    private int lastPublishedHead;
+
+    // Tick-jitter statistics: how late each tick started relative to its schedule
+    private long ticks;
+    private long lateSum;
+    private long lateSumSquares; // in microseconds squared to stay clear of overflow
+    private long lateMax;
+    private long catchUpTicks;
+    private long droppedTicks;
+
+    public GameLoop(GameEngine engine, Consumer<GameSnapshot> publisher, Runnable onFrame) {
+        this.engine = engine;
+        this.publisher = publisher;
+        this.onFrame = onFrame;
+        this.thread = new Thread(this, "game-loop");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    public void start() {
+        lastPublishedHead = engine.getHead();
+        publish(System.nanoTime(), stepNanos());
+        thread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Called from the EDT; queued directions are applied on the loop thread, one per tick.
+    public void submitDirection(Direction direction) {
+        input.offer(direction, System.nanoTime());
+    }
+
+    // A controller (e.g. the autopilot) steers in place of submitted directions while set.
+    public void setController(Controller controller) {
+        this.controller = controller;
+    }
+
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime() + stepNanos();
+        while (!stopped && engine.isRunning()) {
+            long now = System.nanoTime();
+            int steps = 0;
+            while (now >= next && steps < MAX_CATCH_UP_TICKS && engine.isRunning()) {
+                recordLateness(now - next);
+                if (steps > 0) catchUpTicks++;
+                tick();
+                next += stepNanos(); // the new delay applies exactly from the next tick
+                steps++;
+            }
+            if (now >= next && engine.isRunning()) {
+                // Too far behind to catch up: drop the backlog instead of spiralling
+                long step = stepNanos();
+                droppedTicks += (now - next) / step + 1;
+                next = now + step;
+            }
+            if (steps > 0) {
+                publish(now, stepNanos());
+            } else {
+                onFrame.run();
+            }
+            sleepUntil(Math.min(next, System.nanoTime() + FRAME_NANOS));
+        }
+    }
+
+    private void tick() {
+        if (Telemetry.enabled) Telemetry.beginTick();
+        Direction direction;
+        Controller pilot = controller;
+        if (pilot != null) {
+            input.clear(); // keys pressed while the autopilot steers are not replayed later
+            direction = pilot.nextDirection(engine);
+        } else {
+            direction = input.poll(engine);
+        }
+        if (direction != null) {
+            engine.setPendingDirection(direction);
+        }
+        int oldHead = engine.getHead();
+        int oldFood = engine.getFood();
+        int oldPowerUp = engine.getPowerUp();
+        engine.tick();
+        addDirty(oldHead);
+        addDirty(engine.getRemovedTail());
+        if (engine.getFood() != oldFood) addDirty(oldFood);
+        if (engine.getPowerUp() != oldPowerUp) addDirty(oldPowerUp);
+        if (Telemetry.enabled) Telemetry.endTick();
+    }
+
+    private void addDirty(int cell) {
+        if (cell == GameEngine.NONE) return;
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirty.length * 2);
+        }
+        dirty[dirtyCount++] = cell;
+    }
+
+    private void publish(long now, long step) {
+        GameSnapshot next = new GameSnapshot(engine, lastPublishedHead, Arrays.copyOf(dirty, dirtyCount),
+                ++sequence, now, step);
+        dirtyCount = 0;
+        lastPublishedHead = engine.getHead();
+        snapshot = next;
+        publisher.accept(next);
+    }
+
+    private long stepNanos() {
+        return engine.getTickDelay() * 1_000_000L;
+    }
+
+    private void sleepUntil(long deadline) {
+        long remaining;
+        while (!stopped && (remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void recordLateness(long lateNanos) {
+        ticks++;
+        lateSum += lateNanos;
+        long micros = lateNanos / 1000;
+        lateSumSquares += micros * micros;
+        lateMax = Math.max(lateMax, lateNanos);
+    }
+
+    public String getInputStats() {
+        return input.getStats();
+    }
+
+    // Written by the loop thread; readers elsewhere see a best-effort view.
+    public String getJitterStats() {
+        if (ticks == 0) return "no ticks";
+        double meanMicros = lateSum / 1000.0 / ticks;
+        double stdDevMicros = Math.sqrt(Math.max(0, (double) lateSumSquares / ticks - meanMicros * meanMicros));
+        return String.format("ticks=%d late mean=%.1fus stddev=%.1fus max=%.1fus catch-up=%d dropped=%d",
+                ticks, meanMicros, stdDevMicros, lateMax / 1000.0, catchUpTicks, droppedTicks);
+    }
+}
@@ -1,391 +1,445 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
-import javax.sound.sampled.*;
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.function.Consumer;
 
-public class GamePanel extends JPanel implements ActionListener {
+public class GamePanel extends JPanel implements ActionListener, GameListener {
     public static final int SCREEN_WIDTH = 600;
     public static final int SCREEN_HEIGHT = 600;
     public static final int UNIT_SIZE = 25;
-
-    enum Direction { UP, DOWN, LEFT, RIGHT }
-
-    private final Queue<Point> snakeBody = new LinkedList<>();
-    private Point food;
-    private Point powerUp;
-    private int bodyParts = 3;
-    private int foodEaten;
-    private Direction direction = Direction.RIGHT;
-    private Direction pendingDirection = null; // To handle rapid key presses
-    private boolean running = false;
+    // -Dsnake.loop=fixed runs the simulation on GameLoop's thread instead of the Swing Timer
+    private static final boolean FIXED_TIMESTEP = "fixed".equals(System.getProperty("snake.loop"));
+    // -Dsnake.autopilot=true starts in attract mode; the A key toggles the autopilot.
+    // =greedy plays with GreedyController instead, which dies in a few hundred ticks
+    private static final String START_WITH_AUTOPILOT = System.getProperty("snake.autopilot", "false");
+    // -Dsnake.world=COLSxROWS (or one number for a square world) plays on a larger world
+    // seen through a camera; the default is exactly one screen
+    private static final String WORLD_SIZE = System.getProperty("snake.world");
+    // -Dsnake.level=FILE plays on a level map (see Level); the board takes the level's size.
+    // Level games are neither autosaved nor recorded, as saves and replays do not carry walls
+    private static final String LEVEL = System.getProperty("snake.level");
+    // -Dsnake.server=HOST[:PORT] plays on a GameServer; this panel then only draws and sends keys
+    private static final String SERVER = System.getProperty("snake.server");
+    // -Dsnake.autosave=N checkpoints the game every N ticks (0 turns it off); an unfinished
+    // game is resumed at the next start
+    private static final int AUTOSAVE_TICKS = Integer.getInteger("snake.autosave", 50);
+    private static final String REPLAY_FILE = "last-replay.snkr"; // play back with: java Replay last-replay.snkr
+
+    private final GameEngine engine;
     private Timer timer;
-    private final int initialDelay;
-    private int currentDelay;
+    private GameLoop loop;
+    private final InputQueue input = new InputQueue(16); // keys for the Swing Timer's ticks
+    private final boolean fixedTimestep;
+    private Controller autopilot = startingController();
+    private RemoteGame remote; // set in client mode
+    private volatile GameSnapshot snapshot; // latest published state in fixed-timestep mode
+    private long renderedSequence;
+    private boolean snapshotUpdateQueued; // guarded by this
     private final Consumer<Void> restartCallback;
-    private final ScoreStack scoreStack;
-    private long powerUpTimer;
-    private boolean speedBoostActive = false;
-    private boolean scoreMultiplierActive = false;
-    private Clip backgroundMusicClip = null; // For background music
+    private final ScoreStore scores;
+    private final ReplayRecorder recorder = new ReplayRecorder();
+    private final AssetManager assets = AssetManager.shared();
+    private final GameRenderer renderer = assets.takeRenderer(); // pre-built while the menu was up
+    private final JButton restartButton;
+    private final JButton resetButton;
+    private final SoundEngine sounds = SoundEngine.shared();
+    private final int foodSound = sounds.find("food");
+    private final int gameOverSound = sounds.find("gameover");
+    private final int musicSound = sounds.find("music");
 
     public GamePanel(int gameDelay, Consumer<Void> restartCallback) {
-        this.initialDelay = gameDelay;
-        this.currentDelay = gameDelay;
+        this(createEngine(gameDelay), ScoreStore.shared(), restartCallback);
+        if (SERVER != null) {
+            try {
+                remote = RemoteGame.connect(SERVER, gameDelay, this, this::onRemoteUpdate);
+                autopilot = null;
+                sounds.loop(musicSound);
+                return;
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Cannot reach server " + SERVER + ", playing locally: " + e.getMessage());
+            }
+        }
+        engine.setListener(this);
+        if (AUTOSAVE_TICKS > 0 && engine.getLevel() == null) {
+            engine.setAutosave(Autosave.shared(AUTOSAVE_TICKS));
+        }
+        startGame();
+    }
+
+    // Continues a saved game where it stopped.
+    public GamePanel(GameState saved, Consumer<Void> restartCallback) {
+        this(saved.toEngine(), ScoreStore.shared(), restartCallback);
+        engine.setListener(this);
+        engine.setAutosave(Autosave.shared(AUTOSAVE_TICKS));
+        runGame();
+    }
+
+    // The unfinished game from the last session, if autosave is on and there is one.
+    public static GameState savedGame() {
+        if (AUTOSAVE_TICKS <= 0 || SERVER != null || LEVEL != null) return null;
+        GameState saved = Autosave.shared(AUTOSAVE_TICKS).load();
+        return saved != null && saved.isRunning() ? saved : null;
+    }
+
+    // Renders an externally driven engine; used for offscreen drawing.
+    GamePanel(GameEngine engine, ScoreStore scores, Consumer<Void> restartCallback) {
+        this.engine = engine;
+        // Snapshots copy the whole board, so large worlds always tick on the Swing Timer
+        this.fixedTimestep = FIXED_TIMESTEP && !engine.isLargeWorld();
+        if (engine.isLargeWorld()) {
+            autopilot = null;
+        }
         this.restartCallback = restartCallback;
-        this.scoreStack = new ScoreStack();
+        this.scores = scores;
         this.setPreferredSize(new Dimension(SCREEN_WIDTH, SCREEN_HEIGHT));
-        this.setBackground(new Color(20, 40, 80));
+        this.setBackground(GameRenderer.BACKGROUND);
         this.setFocusable(true);
         this.addKeyListener(new MyKeyAdapter());
-        startGame();
+        this.setLayout(null);
+        // The game-over overlay is built once and only toggled afterwards
+        restartButton = createOverlayButton("Restart", 200, SCREEN_HEIGHT / 2 + 50);
+        restartButton.addActionListener(e -> {
+            if (remote != null) {
+                remote.close();
+            }
+            restartCallback.accept(null);
+        });
+        resetButton = createOverlayButton("Reset High Scores", 250, SCREEN_HEIGHT / 2 + 110);
+        resetButton.addActionListener(e -> {
+            scores.resetHighScores();
+            renderer.setHighScores(tierHighScores());
+            renderer.setRankText("");
+        });
+        renderer.setHighScores(tierHighScores());
+        renderer.setInterpolateHead(fixedTimestep);
+    }
+
+    private static Controller startingController() {
+        switch (START_WITH_AUTOPILOT) {
+            case "true": return new Autopilot();
+            case "greedy": return new GreedyController();
+            default: return null;
+        }
+    }
+
+    private static GameEngine createEngine(int gameDelay) {
+        if (LEVEL != null) {
+            try {
+                return new GameEngine(Level.open(Paths.get(LEVEL)), gameDelay, GameConfig.DEFAULT);
+            } catch (IOException e) {
+                System.err.println("Cannot open level " + LEVEL + ", playing without it: " + e.getMessage());
+            }
+        }
+        int cols = SCREEN_WIDTH / UNIT_SIZE;
+        int rows = SCREEN_HEIGHT / UNIT_SIZE;
+        if (WORLD_SIZE != null) {
+            try {
+                String[] parts = WORLD_SIZE.toLowerCase().split("x");
+                cols = Integer.parseInt(parts[0].trim());
+                rows = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : cols;
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid snake.world size: " + WORLD_SIZE);
+            }
+        }
+        return new GameEngine(cols, rows, gameDelay);
     }
 
     public void startGame() {
-        snakeBody.clear();
-        int initialX = UNIT_SIZE * 5;
-        int initialY = SCREEN_HEIGHT / 2;
-        for (int i = 0; i < bodyParts; i++) {
-            snakeBody.offer(new Point(initialX - (i * UNIT_SIZE), initialY));
+        if (remote != null) {
+            remote.restart(); // the server answers with a fresh START
+            showGameOverOverlay(false);
+            renderer.invalidate();
+            sounds.stop(musicSound);
+            sounds.loop(musicSound);
+            return;
         }
-        direction = Direction.RIGHT;
-        pendingDirection = null;
-        newFood();
-        running = true;
-        timer = new Timer(currentDelay, this);
-        timer.start();
-        foodEaten = 0;
-        powerUp = null;
-        powerUpTimer = 0;
-        speedBoostActive = false;
-        scoreMultiplierActive = false;
-        playBackgroundMusic("sounds/music.wav"); // Start background music
+        if (loop != null) {
+            loop.stop();
+        }
+        if (engine.getLevel() == null) {
+            engine.setRecorder(recorder); // replays start with the game, so resumed games have none
+        }
+        input.clear();
+        engine.reset();
+        runGame();
     }
 
-    @Override
-    public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        draw(g);
+    private void runGame() {
+        showGameOverOverlay(false);
+        renderer.invalidate();
+        if (fixedTimestep) {
+            loop = new GameLoop(engine, this::onSnapshot, this::repaintHead);
+            loop.setController(autopilot);
+            loop.start();
+        } else {
+            timer = new Timer(engine.getTickDelay(), this);
+            timer.start();
+        }
+        sounds.stop(musicSound);
+        sounds.loop(musicSound); // Start background music
     }
 
-    public void draw(Graphics g) {
-        if (running) {
-            g.setColor(new Color(30, 60, 100));
-            for (int i = 0; i < SCREEN_WIDTH / UNIT_SIZE; i++) {
-                g.drawLine(i * UNIT_SIZE, 0, i * UNIT_SIZE, SCREEN_HEIGHT);
-                g.drawLine(0, i * UNIT_SIZE, SCREEN_WIDTH, i * UNIT_SIZE);
-            }
+    // The engine belongs to the loop thread in fixed-timestep mode, so the EDT only
+    // ever looks at published snapshots there.
+    private GameView currentView() {
+        if (remote != null) {
+            return remote;
+        }
+        GameSnapshot latest = snapshot;
+        return fixedTimestep && latest != null ? latest : engine;
+    }
 
-            if (food != null) {
-                g.setColor(Color.RED);
-                g.fillOval(food.x, food.y, UNIT_SIZE, UNIT_SIZE);
+    private void onSnapshot(GameSnapshot published) {
+        snapshot = published;
+        synchronized (this) {
+            if (snapshotUpdateQueued) return;
+            snapshotUpdateQueued = true;
+        }
+        SwingUtilities.invokeLater(() -> {
+            synchronized (this) {
+                snapshotUpdateQueued = false;
             }
-
-            if (powerUp != null) {
-                g.setColor(Color.YELLOW);
-                g.fillRect(powerUp.x, powerUp.y, UNIT_SIZE, UNIT_SIZE);
+            GameSnapshot latest = snapshot;
+            if (latest.getSequence() != renderedSequence + 1) {
+                renderer.invalidate(); // skipped snapshots: their dirty cells are gone
             }
-
-            Point head = snakeBody.peek();
-            if (head != null) {
-                for (Point currentPart : snakeBody) {
-                    if (currentPart.equals(head)) {
-                        g.setColor(speedBoostActive ? Color.BLUE : Color.GREEN);
-                        g.fillRect(currentPart.x, currentPart.y, UNIT_SIZE, UNIT_SIZE);
-                    } else {
-                        g.setColor(new Color(45, 180, 0));
-                        g.fillRect(currentPart.x, currentPart.y, UNIT_SIZE, UNIT_SIZE);
-                    }
-                }
+            renderedSequence = latest.getSequence();
+            if (latest.isRunning()) {
+                renderer.update(latest, this);
+                repaintHead();
+                if (Telemetry.enabled) repaintTelemetry();
+            } else {
+                repaint();
             }
+        });
+    }
 
-            g.setColor(Color.CYAN);
-            g.setFont(new Font("Ink Free", Font.BOLD, 20));
-            FontMetrics metrics = getFontMetrics(g.getFont());
-            g.drawString("Score: " + foodEaten, 10, 30);
-            String highScores = "High: " + scoreStack.getTopThree();
-            g.drawString(highScores, SCREEN_WIDTH - metrics.stringWidth(highScores) - 10, 30);
+    // Called on the EDT after each frame from the server.
+    private void onRemoteUpdate() {
+        if (remote.isRunning()) {
+            renderer.update(remote, this);
         } else {
-            gameOver(g);
+            repaint();
         }
     }
 
-    public void newFood() {
-        boolean foodOnSnake;
-        Random random = new Random();
-        do {
-            foodOnSnake = false;
-            int foodX = random.nextInt(SCREEN_WIDTH / UNIT_SIZE) * UNIT_SIZE;
-            int foodY = random.nextInt(SCREEN_HEIGHT / UNIT_SIZE) * UNIT_SIZE;
-            food = new Point(foodX, foodY);
-            for (Point snakePart : snakeBody) {
-                if (snakePart.equals(food)) {
-                    foodOnSnake = true;
-                    break;
-                }
-            }
-        } while (foodOnSnake);
+    // Repaints the two cells the interpolated head moves between; safe off the EDT.
+    private void repaintHead() {
+        GameSnapshot latest = snapshot;
+        if (latest == null) return;
+        int head = latest.getHead();
+        int from = latest.getPreviousHead() == GameEngine.NONE ? head : latest.getPreviousHead();
+        if (head == GameEngine.NONE) return;
+        int x = Math.min(latest.x(head), latest.x(from)) * UNIT_SIZE;
+        int y = Math.min(latest.y(head), latest.y(from)) * UNIT_SIZE;
+        int w = (Math.abs(latest.x(head) - latest.x(from)) + 1) * UNIT_SIZE;
+        int h = (Math.abs(latest.y(head) - latest.y(from)) + 1) * UNIT_SIZE;
+        repaint(x, y, w, h);
     }
 
-    public void newPowerUp() {
-        Random random = new Random();
-        if (random.nextInt(10) < 3) {
-            boolean powerUpOnSnake;
-            do {
-                powerUpOnSnake = false;
-                int powerUpX = random.nextInt(SCREEN_WIDTH / UNIT_SIZE) * UNIT_SIZE;
-                int powerUpY = random.nextInt(SCREEN_HEIGHT / UNIT_SIZE) * UNIT_SIZE;
-                powerUp = new Point(powerUpX, powerUpY);
-                for (Point snakePart : snakeBody) {
-                    if (snakePart.equals(powerUp)) {
-                        powerUpOnSnake = true;
-                        break;
-                    }
-                }
-                if (powerUp != null && food != null && powerUp.equals(food)) {
-                    powerUpOnSnake = true;
-                }
-            } while (powerUpOnSnake);
-            powerUpTimer = System.currentTimeMillis();
+    @Override
+    public void paintComponent(Graphics g) {
+        if (Telemetry.enabled) Telemetry.beginPaint();
+        if (!currentView().isRunning()) {
+            super.paintComponent(g); // while running the renderer's frame covers the whole clip
+        }
+        draw(g);
+        assets.markFirstFrame();
+        if (currentView().isRunning()) {
+            assets.markPlayable();
+        }
+        if (Telemetry.enabled) {
+            renderer.paintTelemetry(g, Telemetry.getHudLines());
+            Telemetry.endPaint();
         }
     }
 
-    public void move() {
-        if (snakeBody.isEmpty()) return;
+    private void repaintTelemetry() {
+        repaint(renderer.telemetryBounds(Telemetry.getHudLines().length));
+    }
 
-        // Apply pending direction if valid
-        if (pendingDirection != null && isValidDirectionChange(direction, pendingDirection)) {
-            direction = pendingDirection;
-            pendingDirection = null;
-        }
+    private void toggleTelemetry() {
+        Telemetry.setEnabled(!Telemetry.isEnabled());
+        repaint();
+    }
 
-        Point head = snakeBody.peek();
-        if (head == null) return; // Additional safety check
+    public void draw(Graphics g) {
+        GameView view = currentView();
+        if (view.isRunning()) {
+            renderer.paint(g, view);
+            if (view instanceof GameSnapshot) {
+                GameSnapshot latest = (GameSnapshot) view;
+                renderer.paintHead(g, latest, latest.getPreviousHead(), latest.alpha(System.nanoTime()));
+            }
+        } else {
+            renderer.paintGameOver(g, view.getFoodEaten());
+        }
+    }
 
-        Point newHead = new Point(head.x, head.y);
+    private JButton createOverlayButton(String text, int width, int y) {
+        JButton button = new JButton(text);
+        button.setFont(AssetManager.font("SansSerif", Font.BOLD, 24));
+        button.setForeground(Color.WHITE);
+        button.setBackground(new Color(0, 102, 204));
+        button.setBounds((SCREEN_WIDTH - width) / 2, y, width, 50);
+        button.setVisible(false);
+        add(button);
+        return button;
+    }
 
-        switch (direction) {
-            case UP: newHead.y -= UNIT_SIZE; break;
-            case DOWN: newHead.y += UNIT_SIZE; break;
-            case LEFT: newHead.x -= UNIT_SIZE; break;
-            case RIGHT: newHead.x += UNIT_SIZE; break;
-        }
+    boolean isGameOver() {
+        return !currentView().isRunning() && restartButton.isVisible();
+    }
 
-        newHead.x = Math.max(0, Math.min(newHead.x, SCREEN_WIDTH - UNIT_SIZE));
-        newHead.y = Math.max(0, Math.min(newHead.y, SCREEN_HEIGHT - UNIT_SIZE));
+    // Presses the game-over Restart button, as the soak test does after every game.
+    void clickRestart() {
+        restartButton.doClick(0);
+    }
 
-        Queue<Point> newSnakeBody = new LinkedList<>();
-        newSnakeBody.offer(newHead);
+    private void showGameOverOverlay(boolean visible) {
+        restartButton.setVisible(visible);
+        resetButton.setVisible(visible);
+    }
 
-        Point previous = head;
-        boolean first = true;
-        for (Point segment : snakeBody) {
-            if (first) { first = false; continue; }
-            newSnakeBody.offer(new Point(previous.x, previous.y));
-            previous = segment;
+    // Engine callbacks arrive on the loop thread in fixed-timestep mode.
+    private void onEdt(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            action.run();
+        } else {
+            SwingUtilities.invokeLater(action);
         }
+    }
 
-        // If we've eaten food, add one more segment at the tail
-        if (newSnakeBody.size() < bodyParts) {
-            newSnakeBody.offer(new Point(previous.x, previous.y));
-        }
+    @Override
+    public void onFoodEaten() {
+        sounds.play(foodSound); // Play food sound
+    }
 
-        snakeBody.clear();
-        while (!newSnakeBody.isEmpty()) {
-            snakeBody.offer(newSnakeBody.poll());
-        }
+    @Override
+    public void onPowerUpCollected() {
+        sounds.play(foodSound); // Reuse food sound for power-up
     }
 
-    private boolean isValidDirectionChange(Direction current, Direction newDir) {
-        // Prevent 180-degree turns (e.g., RIGHT to LEFT)
-        return !(current == Direction.RIGHT && newDir == Direction.LEFT) &&
-                !(current == Direction.LEFT && newDir == Direction.RIGHT) &&
-                !(current == Direction.UP && newDir == Direction.DOWN) &&
-                !(current == Direction.DOWN && newDir == Direction.UP);
+    @Override
+    public void onGameOver(int score) {
+        onEdt(() -> gameOver(score));
     }
 
-    public void checkFood() {
-        if (food != null && !snakeBody.isEmpty()) {
-            Point head = snakeBody.peek();
-            if (head != null && head.equals(food)) {
-                bodyParts++;
-                foodEaten += scoreMultiplierActive ? 2 : 1;
-                newFood();
-                newPowerUp();
-                playSound("sounds/food.wav"); // Play food sound
-                if (foodEaten % 5 == 0 && currentDelay > 50) {
-                    currentDelay = Math.max(50, currentDelay - 10);
-                    timer.setDelay(currentDelay);
-                }
-            }
+    private void gameOver(int score) {
+        if (timer != null) {
+            timer.stop();
         }
+        scores.push(score, engine.getInitialDelay());
+        saveReplay();
+        Leaderboard leaderboard = scores.getLeaderboard();
+        int tier = engine.getInitialDelay();
+        renderer.setHighScores(tierHighScores());
+        long rank = leaderboard.rank(score, tier);
+        long games = leaderboard.size(tier);
+        renderer.setRankText("Rank #" + rank + " of " + games + " at this speed (top "
+                + (int) Math.ceil(100.0 * rank / games) + "%)");
+        showGameOverOverlay(true);
+        sounds.stop(musicSound); // Stop music on game over
+        sounds.play(gameOverSound); // Play game over sound
     }
 
-    public void checkPowerUp() {
-        Random random = new Random();
-        if (powerUp != null && !snakeBody.isEmpty()) {
-            Point head = snakeBody.peek();
-            if (head != null && head.equals(powerUp)) {
-                playSound("sounds/food.wav"); // Reuse food sound for power-up
-                if (random.nextBoolean()) {
-                    speedBoostActive = true;
-                    timer.setDelay(currentDelay / 2);
-                } else {
-                    scoreMultiplierActive = true;
-                }
-                powerUp = null;
-                powerUpTimer = System.currentTimeMillis();
-            }
-        }
-        if (powerUp != null && System.currentTimeMillis() - powerUpTimer > 5000) {
-            powerUp = null;
-        }
-        if (speedBoostActive && System.currentTimeMillis() - powerUpTimer > 5000) {
-            speedBoostActive = false;
-            timer.setDelay(currentDelay);
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (Telemetry.enabled) Telemetry.beginTick();
+        Direction direction;
+        if (autopilot != null) {
+            input.clear();
+            direction = autopilot.nextDirection(engine);
+        } else {
+            direction = input.poll(engine);
         }
-        if (scoreMultiplierActive && System.currentTimeMillis() - powerUpTimer > 5000) {
-            scoreMultiplierActive = false;
+        if (direction != null) {
+            engine.setPendingDirection(direction);
         }
-    }
-
-    public void checkCollisions() {
-        if (snakeBody.isEmpty()) return;
-
-        Point head = snakeBody.peek();
-        if (head == null) return; // Safety check
-
-        int count = 1;
-        for (Point segment : snakeBody) {
-            if (count > 1 && segment.equals(head)) {
-                running = false;
-                break;
+        engine.tick();
+        if (engine.isRunning()) {
+            if (timer.getDelay() != engine.getTickDelay()) {
+                timer.setDelay(engine.getTickDelay());
             }
-            count++;
-        }
-
-        if (head.x < 0 || head.x >= SCREEN_WIDTH || head.y < 0 || head.y >= SCREEN_HEIGHT) {
-            running = false;
+            renderer.update(engine, this);
+        } else {
+            repaint();
         }
-
-        if (!running) {
-            timer.stop();
-            scoreStack.push(foodEaten);
-            stopBackgroundMusic(); // Stop music on game over
-            playSound("sounds/gameover.wav"); // Play game over sound
+        if (Telemetry.enabled) {
+            Telemetry.endTick();
+            repaintTelemetry();
         }
     }
 
-    public void gameOver(Graphics g) {
-        g.setColor(Color.RED);
-        g.setFont(new Font("Ink Free", Font.BOLD, 40));
-        FontMetrics metrics1 = getFontMetrics(g.getFont());
-        g.drawString("Score: " + foodEaten, (SCREEN_WIDTH - metrics1.stringWidth("Score: " + foodEaten)) / 2, SCREEN_HEIGHT / 3);
-
-        g.setFont(new Font("Ink Free", Font.BOLD, 75));
-        FontMetrics metrics2 = getFontMetrics(g.getFont());
-        g.drawString("Game Over", (SCREEN_WIDTH - metrics2.stringWidth("Game Over")) / 2, SCREEN_HEIGHT / 2);
-
-        JButton restartButton = new JButton("Restart");
-        restartButton.setFont(new Font("SansSerif", Font.BOLD, 24));
-        restartButton.setForeground(Color.WHITE);
-        restartButton.setBackground(new Color(0, 102, 204));
-        restartButton.setBounds((SCREEN_WIDTH - 200) / 2, SCREEN_HEIGHT / 2 + 50, 200, 50);
-        restartButton.addActionListener(e -> restartCallback.accept(null));
-        add(restartButton);
-
-        JButton resetButton = new JButton("Reset High Scores");
-        resetButton.setFont(new Font("SansSerif", Font.BOLD, 24));
-        resetButton.setForeground(Color.WHITE);
-        resetButton.setBackground(new Color(0, 102, 204));
-        resetButton.setBounds((SCREEN_WIDTH - 250) / 2, SCREEN_HEIGHT / 2 + 110, 250, 50);
-        resetButton.addActionListener(e -> scoreStack.resetHighScores());
-        add(resetButton);
+    // Best scores at the speed this game was started with.
+    private String tierHighScores() {
+        return scores.getLeaderboard().getHudText(engine.getInitialDelay());
     }
 
-    private void playSound(String filePath) {
+    private void saveReplay() {
+        if (!recorder.isFinished()) return;
         try {
-            File soundFile = new File(filePath);
-            if (!soundFile.exists()) {
-                System.err.println("Sound file not found: " + soundFile.getAbsolutePath());
-                return;
-            }
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(soundFile);
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioInputStream);
-            clip.start();
-        } catch (Exception e) {
-            System.err.println("Error playing sound: " + e.getMessage());
+            recorder.save(REPLAY_FILE);
+        } catch (IOException e) {
+            System.err.println("Error saving replay: " + e.getMessage());
         }
     }
 
-    private void playBackgroundMusic(String filePath) {
-        try {
-            if (backgroundMusicClip != null && backgroundMusicClip.isRunning()) {
-                backgroundMusicClip.stop();
-                backgroundMusicClip.close();
-            }
-            File musicFile = new File(filePath);
-            if (musicFile.exists()) {
-                AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(musicFile);
-                backgroundMusicClip = AudioSystem.getClip();
-                backgroundMusicClip.open(audioInputStream);
-                backgroundMusicClip.loop(Clip.LOOP_CONTINUOUSLY); // Loop the music
-                backgroundMusicClip.start();
-            } else {
-                System.err.println("Background music file not found: " + musicFile.getAbsolutePath());
-            }
-        } catch (Exception e) {
-            System.err.println("Error playing background music: " + e.getMessage());
+    private void toggleAutopilot() {
+        if (remote != null) {
+            System.err.println("Autopilot is not available when playing on a server");
+            return;
         }
-    }
-
-    private void stopBackgroundMusic() {
-        if (backgroundMusicClip != null && backgroundMusicClip.isRunning()) {
-            backgroundMusicClip.stop();
-            backgroundMusicClip.close();
-            backgroundMusicClip = null;
+        if (engine.isLargeWorld()) {
+            System.err.println("Autopilot is not available on large worlds");
+            return;
+        }
+        autopilot = autopilot == null ? new Autopilot() : null;
+        if (loop != null) {
+            loop.setController(autopilot);
         }
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (running) {
-            move();
-            checkFood();
-            checkPowerUp();
-            checkCollisions();
+    private void steer(Direction direction) {
+        if (remote != null) {
+            remote.sendDirection(direction);
+        } else if (loop != null) {
+            loop.submitDirection(direction);
+        } else {
+            input.offer(direction, System.nanoTime());
         }
-        repaint();
     }
 
     public class MyKeyAdapter extends KeyAdapter {
         @Override
         public void keyPressed(KeyEvent e) {
-            if (!running) {
+            if (e.getKeyCode() == KeyEvent.VK_F3) {
+                toggleTelemetry();
+                return;
+            }
+            if (!currentView().isRunning()) {
                 if (e.getKeyCode() == KeyEvent.VK_R) {
-                    removeAll();
-                    bodyParts = 3;
                     startGame();
                 }
                 return;
             }
             switch (e.getKeyCode()) {
+                case KeyEvent.VK_A:
+                    toggleAutopilot();
+                    break;
                 case KeyEvent.VK_LEFT:
-                    if (isValidDirectionChange(direction, Direction.LEFT)) pendingDirection = Direction.LEFT;
+                    steer(Direction.LEFT);
                     break;
                 case KeyEvent.VK_RIGHT:
-                    if (isValidDirectionChange(direction, Direction.RIGHT)) pendingDirection = Direction.RIGHT;
+                    steer(Direction.RIGHT);
                     break;
                 case KeyEvent.VK_UP:
-                    if (isValidDirectionChange(direction, Direction.UP)) pendingDirection = Direction.UP;
+                    steer(Direction.UP);
                     break;
                 case KeyEvent.VK_DOWN:
-                    if (isValidDirectionChange(direction, Direction.DOWN)) pendingDirection = Direction.DOWN;
+                    steer(Direction.DOWN);
                     break;
             }
         }
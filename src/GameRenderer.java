@@ -0,0 +1,312 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Retained-mode board renderer. The grid is pre-rendered once, the board is kept in
+// an offscreen frame and only cells that changed since the last update are redrawn
+// into it; painting is a clipped blit of that frame plus the cached HUD strings.
+// The frame shows a viewport of the world: a camera recentres on the head when it gets
+// near an edge, so drawing cost depends on the viewport and not on the world size.
+public class GameRenderer {
+    static final Color BACKGROUND = new Color(20, 40, 80);
+    static final Color GRID = new Color(30, 60, 100);
+    static final Color BODY = new Color(45, 180, 0);
+    static final Color WALL = new Color(110, 110, 130);
+    static final Font HUD_FONT = AssetManager.font("Ink Free", Font.BOLD, 20);
+    static final Font SCORE_FONT = AssetManager.font("Ink Free", Font.BOLD, 40);
+    static final Font TITLE_FONT = AssetManager.font("Ink Free", Font.BOLD, 75);
+    static final Color OUTSIDE = new Color(10, 20, 40);
+    static final Font TELEMETRY_FONT = AssetManager.font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color TELEMETRY_BACKGROUND = new Color(0, 0, 0, 170);
+    private static final int TELEMETRY_LINE = 14;
+    private static final int HUD_HEIGHT = 40;
+    private static final int CAMERA_MARGIN = 4; // cells between the head and the viewport edge
+
+    private final int width;
+    private final int height;
+    private final int unit;
+    private final int viewCols;
+    private final int viewRows;
+    private int originX; // world cell at the top-left of the viewport
+    private int originY;
+    private String foodHint = "";
+    private final BufferedImage gridLayer;
+    private final BufferedImage frame;
+    private final Graphics2D frameGraphics;
+    private boolean valid = false;
+    private boolean interpolateHead = false;
+    private int lastHead = GameEngine.NONE;
+    private int lastFood = GameEngine.NONE;
+    private int lastPowerUp = GameEngine.NONE;
+    private int lastScore = -1;
+    private String scoreText = "";
+    private String highScoresText = "High: 0";
+    private int highScoresWidth = -1;
+    private int gameOverScore = -1;
+    private String gameOverScoreText = "";
+    private String rankText = "";
+    private FontMetrics hudMetrics;
+    private FontMetrics scoreMetrics;
+    private FontMetrics titleMetrics;
+
+    public GameRenderer(int width, int height, int unit) {
+        this.width = width;
+        this.height = height;
+        this.unit = unit;
+        this.viewCols = width / unit;
+        this.viewRows = height / unit;
+        this.gridLayer = createImage(width, height);
+        this.frame = createImage(width, height);
+        this.frameGraphics = frame.createGraphics();
+
+        Graphics2D g = gridLayer.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        g.setColor(GRID);
+        for (int i = 0; i < width / unit; i++) {
+            g.drawLine(i * unit, 0, i * unit, height);
+        }
+        for (int i = 0; i < height / unit; i++) {
+            g.drawLine(0, i * unit, width, i * unit);
+        }
+        g.dispose();
+    }
+
+    // Uses a display-compatible (accelerated) image when a screen is available.
+    private static BufferedImage createImage(int width, int height) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return config.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    // When set, the head is left out of the frame and drawn by paintHead at an
+    // interpolated position instead.
+    public void setInterpolateHead(boolean interpolateHead) {
+        this.interpolateHead = interpolateHead;
+        valid = false;
+    }
+
+    public void setHighScores(String highScores) {
+        highScoresText = "High: " + highScores;
+        highScoresWidth = -1;
+    }
+
+    // Shown under the score on the game-over screen.
+    public void setRankText(String rankText) {
+        this.rankText = rankText;
+    }
+
+    // Redraws the cells touched by the last tick into the frame and reports them to
+    // the component as dirty regions.
+    public void update(GameView view, Component component) {
+        follow(view);
+        if (!valid) {
+            redrawAll(view);
+            component.repaint();
+            return;
+        }
+        int head = view.getHead();
+        if (head != lastHead) {
+            repaintCell(view, lastHead, component);
+        }
+        repaintCell(view, head, component);
+        for (int i = 0; i < view.getDirtyCellCount(); i++) {
+            repaintCell(view, view.getDirtyCell(i), component);
+        }
+        if (view.getFood() != lastFood) {
+            repaintCell(view, lastFood, component);
+            repaintCell(view, view.getFood(), component);
+        }
+        if (view.getPowerUp() != lastPowerUp) {
+            repaintCell(view, lastPowerUp, component);
+            repaintCell(view, view.getPowerUp(), component);
+        }
+        if (view.getFoodEaten() != lastScore || updateFoodHint(view)) {
+            component.repaint(0, 0, width, HUD_HEIGHT);
+        }
+        remember(view);
+    }
+
+    // Moves the camera so the head is centred once it comes within CAMERA_MARGIN of an edge.
+    private void follow(GameView view) {
+        int head = view.getHead();
+        if (head == GameEngine.NONE) return;
+        int x = originFor(view.x(head), originX, viewCols, view.getCols());
+        int y = originFor(view.y(head), originY, viewRows, view.getRows());
+        if (x != originX || y != originY) {
+            originX = x;
+            originY = y;
+            valid = false;
+        }
+    }
+
+    private static int originFor(int head, int origin, int view, int world) {
+        if (world <= view) return 0;
+        int onScreen = head - origin;
+        if (onScreen >= CAMERA_MARGIN && onScreen < view - CAMERA_MARGIN) return origin;
+        return Math.max(0, Math.min(head - view / 2, world - view));
+    }
+
+    // Points at food outside the viewport; returns whether the hint text changed.
+    private boolean updateFoodHint(GameView view) {
+        int food = view.getFood();
+        String hint = "";
+        if (food != GameEngine.NONE && !isVisible(view.x(food), view.y(food))) {
+            int dx = view.x(food) - view.x(view.getHead());
+            int dy = view.y(food) - view.y(view.getHead());
+            hint = "Food " + Math.abs(dx) + (dx < 0 ? "W " : "E ") + Math.abs(dy) + (dy < 0 ? "N" : "S");
+        }
+        if (hint.equals(foodHint)) return false;
+        foodHint = hint;
+        return true;
+    }
+
+    private boolean isVisible(int x, int y) {
+        return x >= originX && x < originX + viewCols && y >= originY && y < originY + viewRows;
+    }
+
+    private void repaintCell(GameView view, int cell, Component component) {
+        if (cell == GameEngine.NONE || !isVisible(view.x(cell), view.y(cell))) return;
+        drawCell(view, cell);
+        component.repaint((view.x(cell) - originX) * unit, (view.y(cell) - originY) * unit, unit, unit);
+    }
+
+    private void redrawAll(GameView view) {
+        frameGraphics.drawImage(gridLayer, 0, 0, null);
+        int visibleCols = Math.min(viewCols, view.getCols() - originX);
+        int visibleRows = Math.min(viewRows, view.getRows() - originY);
+        frameGraphics.setColor(OUTSIDE);
+        frameGraphics.fillRect(visibleCols * unit, 0, width - visibleCols * unit, height);
+        frameGraphics.fillRect(0, visibleRows * unit, width, height - visibleRows * unit);
+        drawCell(view, view.getFood());
+        drawCell(view, view.getPowerUp());
+        drawCell(view, view.getHead());
+        for (int y = 0; y < visibleRows; y++) {
+            int rowStart = (originY + y) * view.getCols() + originX;
+            for (int x = 0; x < visibleCols; x++) {
+                if (view.isOccupied(rowStart + x)) {
+                    drawCell(view, rowStart + x);
+                }
+            }
+        }
+        updateFoodHint(view);
+        remember(view);
+        valid = true;
+    }
+
+    private void remember(GameView view) {
+        lastHead = view.getHead();
+        lastFood = view.getFood();
+        lastPowerUp = view.getPowerUp();
+    }
+
+    private void drawCell(GameView view, int cell) {
+        if (cell == GameEngine.NONE || !isVisible(view.x(cell), view.y(cell))) return;
+        int x = (view.x(cell) - originX) * unit;
+        int y = (view.y(cell) - originY) * unit;
+        frameGraphics.drawImage(gridLayer, x, y, x + unit, y + unit, x, y, x + unit, y + unit, null);
+        if (cell == view.getHead()) {
+            if (interpolateHead) return;
+            frameGraphics.setColor(view.isSpeedBoostActive() ? Color.BLUE : Color.GREEN);
+            frameGraphics.fillRect(x, y, unit, unit);
+        } else if (view.isWall(cell)) {
+            frameGraphics.setColor(WALL);
+            frameGraphics.fillRect(x, y, unit, unit);
+        } else if (view.isOccupied(cell)) {
+            frameGraphics.setColor(BODY);
+            frameGraphics.fillRect(x, y, unit, unit);
+        } else if (cell == view.getFood()) {
+            frameGraphics.setColor(Color.RED);
+            frameGraphics.fillOval(x, y, unit, unit);
+        } else if (cell == view.getPowerUp()) {
+            frameGraphics.setColor(Color.YELLOW);
+            frameGraphics.fillRect(x, y, unit, unit);
+        }
+    }
+
+    public void paint(Graphics g, GameView view) {
+        follow(view);
+        if (!valid) {
+            redrawAll(view);
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
+        int x2 = Math.min(width, clip.x + clip.width);
+        int y2 = Math.min(height, clip.y + clip.height);
+        g.drawImage(frame, clip.x, clip.y, x2, y2, clip.x, clip.y, x2, y2, null);
+
+        if (clip.y < HUD_HEIGHT) {
+            int score = view.getFoodEaten();
+            if (score != lastScore) {
+                lastScore = score;
+                scoreText = "Score: " + score;
+            }
+            g.setFont(HUD_FONT);
+            if (hudMetrics == null) hudMetrics = g.getFontMetrics(HUD_FONT);
+            if (highScoresWidth < 0) highScoresWidth = hudMetrics.stringWidth(highScoresText);
+            g.setColor(Color.CYAN);
+            g.drawString(scoreText, 10, 30);
+            g.drawString(highScoresText, width - highScoresWidth - 10, 30);
+            if (!foodHint.isEmpty()) {
+                g.setColor(Color.RED);
+                g.drawString(foodHint, (width - hudMetrics.stringWidth(foodHint)) / 2, 30);
+            }
+        }
+    }
+
+    // Draws the head sliding from fromCell towards the current head cell.
+    public void paintHead(Graphics g, GameView view, int fromCell, double alpha) {
+        int head = view.getHead();
+        if (head == GameEngine.NONE) return;
+        if (fromCell == GameEngine.NONE) fromCell = head;
+        int x = (int) Math.round((view.x(fromCell) - originX + (view.x(head) - view.x(fromCell)) * alpha) * unit);
+        int y = (int) Math.round((view.y(fromCell) - originY + (view.y(head) - view.y(fromCell)) * alpha) * unit);
+        g.setColor(view.isSpeedBoostActive() ? Color.BLUE : Color.GREEN);
+        g.fillRect(x, y, unit, unit);
+    }
+
+    // Telemetry overlay along the bottom edge, see telemetryBounds.
+    public void paintTelemetry(Graphics g, String[] lines) {
+        Rectangle bounds = telemetryBounds(lines.length);
+        g.setColor(TELEMETRY_BACKGROUND);
+        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g.setColor(Color.WHITE);
+        g.setFont(TELEMETRY_FONT);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 6, bounds.y + (i + 1) * TELEMETRY_LINE);
+        }
+    }
+
+    public Rectangle telemetryBounds(int lines) {
+        int h = lines * TELEMETRY_LINE + 6;
+        return new Rectangle(0, height - h, width, h);
+    }
+
+    public void paintGameOver(Graphics g, int score) {
+        if (scoreMetrics == null) {
+            scoreMetrics = g.getFontMetrics(SCORE_FONT);
+            titleMetrics = g.getFontMetrics(TITLE_FONT);
+        }
+        if (score != gameOverScore) {
+            gameOverScore = score;
+            gameOverScoreText = "Score: " + score;
+        }
+        g.setColor(Color.RED);
+        g.setFont(SCORE_FONT);
+        g.drawString(gameOverScoreText, (width - scoreMetrics.stringWidth(gameOverScoreText)) / 2, height / 3);
+        if (!rankText.isEmpty()) {
+            g.setFont(HUD_FONT);
+            g.drawString(rankText, (width - g.getFontMetrics().stringWidth(rankText)) / 2, height / 3 + 35);
+        }
+        g.setFont(TITLE_FONT);
+        g.drawString("Game Over", (width - titleMetrics.stringWidth("Game Over")) / 2, height / 2);
+    }
+}
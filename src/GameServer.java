@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+// Authoritative game server: every connection plays its own GameEngine, simulated here.
+// A single thread runs a selector loop that accepts clients, reads their inputs and
+// ticks each game on its own schedule; after a tick only a NetProtocol DELTA goes out.
+//
+// Usage: java -cp out GameServer [--port 7777] [--board 24] [--max-clients N]
+public class GameServer implements Runnable {
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final long STATS_NANOS = 5_000_000_000L;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final int board;
+    private final int maxClients;
+    private final PriorityQueue<Session> schedule = new PriorityQueue<>((a, b) -> Long.compare(a.nextTick, b.nextTick));
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+    private volatile boolean stopped = false;
+
+    // Statistics, written by the server thread
+    private volatile int clients;
+    private volatile int peakClients;
+    private volatile long ticks;
+    private volatile long bytesOut;
+    private volatile long dropped;
+
+    private final class Session {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(1024);
+        ByteBuffer out;
+        GameEngine engine;
+        long nextTick;
+        Direction input;
+        long stamp = -1; // echo token of the last applied input
+        int lastFood;
+        int lastPowerUp;
+        int lastScore;
+        int lastStatus;
+
+        Session(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.out = ByteBuffer.allocate(NetProtocol.maxStartSize(board * board) + 1024);
+        }
+
+        void start(int delay) {
+            engine = new GameEngine(board, board, Math.max(GameConfig.DEFAULT.minDelay, delay));
+            restart();
+        }
+
+        void restart() {
+            if (engine == null) return;
+            if (out.remaining() < NetProtocol.maxStartSize(board * board)) {
+                close("output buffer full");
+                return;
+            }
+            schedule.remove(this);
+            engine.reset();
+            input = null;
+            stamp = -1;
+            remember();
+            NetProtocol.writeStart(out, engine);
+            nextTick = System.nanoTime() + engine.getTickDelay() * 1_000_000L;
+            schedule.add(this);
+        }
+
+        void remember() {
+            lastFood = engine.getFood();
+            lastPowerUp = engine.getPowerUp();
+            lastScore = engine.getFoodEaten();
+            lastStatus = NetProtocol.status(engine);
+        }
+
+        void tick() {
+            long ack = -1;
+            if (input != null) {
+                engine.setPendingDirection(input);
+                input = null;
+                ack = stamp;
+            }
+            engine.tick();
+            ticks++;
+
+            int flags = engine.getDirection().ordinal();
+            int status = NetProtocol.status(engine);
+            if (engine.getRemovedTail() != GameEngine.NONE) flags |= NetProtocol.TAIL_REMOVED;
+            if (engine.getFood() != lastFood) flags |= NetProtocol.FOOD;
+            if (engine.getPowerUp() != lastPowerUp) flags |= NetProtocol.POWER_UP;
+            if (engine.getFoodEaten() != lastScore) flags |= NetProtocol.SCORE;
+            if (ack >= 0) flags |= NetProtocol.ACK;
+            if (status != lastStatus) flags |= NetProtocol.STATUS;
+            if (out.remaining() < 64) {
+                close("output buffer full");
+                return;
+            }
+            int start = NetProtocol.beginFrame(out, NetProtocol.DELTA);
+            out.put((byte) flags);
+            if ((flags & NetProtocol.FOOD) != 0) NetProtocol.putVarint(out, engine.getFood() + 1);
+            if ((flags & NetProtocol.POWER_UP) != 0) NetProtocol.putVarint(out, engine.getPowerUp() + 1);
+            if ((flags & NetProtocol.SCORE) != 0) NetProtocol.putVarint(out, engine.getFoodEaten());
+            if ((flags & NetProtocol.ACK) != 0) NetProtocol.putVarint(out, ack);
+            if ((flags & NetProtocol.STATUS) != 0) NetProtocol.putVarint(out, status);
+            NetProtocol.endFrame(out, start);
+            remember();
+        }
+
+        void onFrame(byte type, ByteBuffer frame) {
+            switch (type) {
+                case NetProtocol.HELLO:
+                    start(NetProtocol.getInt(frame));
+                    break;
+                case NetProtocol.INPUT:
+                    int direction = NetProtocol.getInt(frame);
+                    if (direction >= 0 && direction < 4) {
+                        input = Direction.values()[direction];
+                        stamp = NetProtocol.getVarint(frame);
+                    }
+                    break;
+                case NetProtocol.RESTART:
+                    if (engine != null && !engine.isRunning()) restart();
+                    break;
+                default:
+                    close("unknown message " + type);
+            }
+        }
+
+        void flush() {
+            if (out.position() == 0 || !key.isValid()) return;
+            out.flip();
+            try {
+                bytesOut += channel.write(out);
+            } catch (IOException e) {
+                close("");
+                return;
+            }
+            out.compact();
+            int ops = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (key.isValid() && key.interestOps() != ops) key.interestOps(ops);
+        }
+
+        void close(String reason) {
+            if (!key.isValid()) return;
+            key.cancel();
+            schedule.remove(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing client: " + e.getMessage());
+            }
+            clients--;
+            if (!reason.isEmpty()) {
+                dropped++;
+                System.err.println("Dropped client: " + reason);
+            }
+        }
+    }
+
+    public GameServer(int port, int board, int maxClients) throws IOException {
+        this.board = board;
+        this.maxClients = maxClients;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void stop() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextStats = System.nanoTime() + STATS_NANOS;
+        try {
+            while (!stopped) {
+                Session first = schedule.peek();
+                // Rounded up, so the last millisecond before a tick is slept rather than spun
+                long wait = first == null ? 1000 : Math.floorDiv(first.nextTick - System.nanoTime() + 999_999, 1_000_000);
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        if (key.isReadable()) read(session);
+                        if (key.isValid() && key.isWritable()) session.flush();
+                    }
+                }
+                tickDue();
+                long now = System.nanoTime();
+                if (now >= nextStats) {
+                    System.out.println("Server: " + getStats());
+                    nextStats = now + STATS_NANOS;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+        } finally {
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Error closing server: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (clients >= maxClients) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Session(channel, key));
+            clients++;
+            peakClients = Math.max(peakClients, clients);
+        }
+    }
+
+    private void read(Session session) {
+        readBuffer.clear();
+        int read;
+        try {
+            read = session.channel.read(readBuffer);
+        } catch (IOException e) {
+            session.close("");
+            return;
+        }
+        if (read < 0) {
+            session.close("");
+            return;
+        }
+        readBuffer.flip();
+        ByteBuffer in = session.in;
+        if (in.remaining() < readBuffer.remaining()) {
+            session.close("input overflow");
+            return;
+        }
+        in.put(readBuffer);
+        in.flip();
+        while (in.remaining() >= 3) {
+            int length = in.getShort(in.position()) & 0xffff;
+            if (length < 1) {
+                session.close("bad frame");
+                return;
+            }
+            if (in.remaining() < 2 + length) break;
+            int end = in.position() + 2 + length;
+            in.position(in.position() + 2);
+            byte type = in.get();
+            ByteBuffer frame = in.slice();
+            frame.limit(end - in.position());
+            try {
+                session.onFrame(type, frame);
+            } catch (RuntimeException e) {
+                // a truncated or garbled frame ends this client, not the server
+                session.close("bad frame: " + e);
+                return;
+            }
+            if (!session.key.isValid()) return;
+            in.position(end);
+        }
+        in.compact();
+        session.flush();
+    }
+
+    // Ticks every game whose deadline has passed, catching up at most a few ticks.
+    private void tickDue() {
+        long now = System.nanoTime();
+        Session session;
+        while ((session = schedule.peek()) != null && session.nextTick <= now) {
+            schedule.poll();
+            int steps = 0;
+            while (session.nextTick <= now && steps++ < MAX_CATCH_UP_TICKS && session.engine.isRunning()) {
+                session.tick();
+                session.nextTick += session.engine.getTickDelay() * 1_000_000L;
+            }
+            if (session.nextTick <= now) {
+                session.nextTick = now + session.engine.getTickDelay() * 1_000_000L; // drop the backlog
+            }
+            if (session.key.isValid()) {
+                session.flush();
+                if (session.engine.isRunning()) schedule.add(session);
+            }
+        }
+    }
+
+    public String getStats() {
+        return String.format("clients=%d peak=%d ticks=%d bytesOut=%d (%.1f B/tick) dropped=%d",
+                clients, peakClients, ticks, bytesOut, ticks == 0 ? 0 : (double) bytesOut / ticks, dropped);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = NetProtocol.DEFAULT_PORT;
+        int board = GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE;
+        int maxClients = 100_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--board": board = Math.min(100, Integer.parseInt(args[++i])); break;
+                case "--max-clients": maxClients = Integer.parseInt(args[++i]); break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+        GameServer server = new GameServer(port, board, maxClients);
+        System.out.println("Snake server listening on port " + server.getPort() + " (" + board + "x" + board + ")");
+        server.run();
+    }
+}
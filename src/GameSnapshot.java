@@ -0,0 +1,80 @@
+// Immutable copy of the state the renderer needs, published by GameLoop after each
+// batch of ticks. The body is carried as an occupancy bitmap rather than a segment list.
+public final class GameSnapshot implements GameView {
+    private final int cols;
+    private final int rows;
+    private final long[] occupied;
+    private final Level level;
+    private final int head;
+    private final int previousHead;
+    private final int food;
+    private final int powerUp;
+    private final int foodEaten;
+    private final boolean running;
+    private final boolean speedBoostActive;
+    private final int[] dirty;
+    private final long sequence;
+    private final long timeNanos;
+    private final long stepNanos;
+
+    GameSnapshot(GameEngine engine, int previousHead, int[] dirty, long sequence, long timeNanos, long stepNanos) {
+        this.cols = engine.getCols();
+        this.rows = engine.getRows();
+        this.occupied = engine.copyOccupancy();
+        this.level = engine.getLevel();
+        this.head = engine.getHead();
+        this.previousHead = previousHead;
+        this.food = engine.getFood();
+        this.powerUp = engine.getPowerUp();
+        this.foodEaten = engine.getFoodEaten();
+        this.running = engine.isRunning();
+        this.speedBoostActive = engine.isSpeedBoostActive();
+        this.dirty = dirty;
+        this.sequence = sequence;
+        this.timeNanos = timeNanos;
+        this.stepNanos = stepNanos;
+    }
+
+    @Override public int getCols() { return cols; }
+    @Override public int getRows() { return rows; }
+    @Override public int getHead() { return head; }
+    @Override public int getFood() { return food; }
+    @Override public int getPowerUp() { return powerUp; }
+    @Override public int getFoodEaten() { return foodEaten; }
+    @Override public boolean isRunning() { return running; }
+    @Override public boolean isSpeedBoostActive() { return speedBoostActive; }
+
+    @Override
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    @Override
+    public boolean isWall(int cell) {
+        return level != null && level.isWall(cell);
+    }
+
+    @Override
+    public int getDirtyCellCount() {
+        return dirty.length;
+    }
+
+    @Override
+    public int getDirtyCell(int i) {
+        return dirty[i];
+    }
+
+    // Head position one snapshot earlier, the starting point for interpolation.
+    public int getPreviousHead() {
+        return previousHead;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Fraction of the current step that has elapsed at the given time, in [0, 1].
+    public double alpha(long nowNanos) {
+        return Math.max(0, Math.min(1, (double) (nowNanos - timeNanos) / stepNanos));
+    }
+}
@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Everything needed to continue a game exactly where it stopped, including the random
+// generator and the free cell order that sampling depends on, so a resumed game plays
+// out exactly as the original would have. Captured by GameEngine.capture(), which
+// shares the pages of the body ring and the free order instead of copying them.
+//
+// Save format, little-endian fixed-width fields:
+//   "SNKG" version(u16) bodyEncoding(u8) flags(u8: running, speed boost, multiplier)
+//   cols rows initialDelay config(8 ints) seed(i64) randomState(i64)
+//   direction(u8) pendingDirection(u8, 255 = none) 0(u16)
+//   bodyParts foodEaten food powerUp currentDelay tickCount(i64) gameTime(i64) timerCount 0
+//   length headCell body... freeCount freeCells(ints)... timers... crc32 (of everything before it)
+// A connected body (every segment next to the one before, which a running game always
+// has) is PACKED: the direction from each segment to the next, 2 bits each, 32 per
+// long, so a 1M-segment snake is 250 KB and is read back with one bulk get. Any other
+// body is RAW: one int per cell after the head. freeCount is 0 for chunked worlds,
+// whose sampling does not depend on an order. Each timer is the deadline tick (i64) and
+// kind << 32 | payload (i64) of a pending timing wheel entry.
+//
+// Version 1 had one powerUpTimer(i64) in place of timerCount and no timers; it is read by
+// turning the power-up and the active effects into timers ending when that one would.
+public final class GameState {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'G'};
+    static final int VERSION = 2;
+    static final int PACKED = 0;
+    static final int RAW = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 1 + 1 + 4 * 11 + 8 * 2 + 4 + 4 * 5 + 8 * 3 + 4 * 3;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    final int cols;
+    final int rows;
+    final int initialDelay;
+    final GameConfig config;
+    final long seed;
+    final long randomState;
+    final Direction direction;
+    final Direction pendingDirection;
+    final boolean running;
+    final int bodyParts;
+    final int foodEaten;
+    final int food;
+    final int powerUp;
+    final int currentDelay;
+    final long tickCount;
+    final long gameTime;
+    final long[] timers; // see TimingWheel.export
+    final PagedInts body; // ring buffer snapshot
+    final int head;
+    final int length;
+    final PagedInts freeOrder; // null for chunked worlds
+    final int freeCount;       // cells of freeOrder in use
+
+    GameState(int cols, int rows, int initialDelay, GameConfig config, long seed, long randomState,
+              Direction direction, Direction pendingDirection, boolean running, int bodyParts, int foodEaten,
+              int food, int powerUp, int currentDelay, long tickCount, long gameTime, long[] timers,
+              PagedInts body, int head, int length, PagedInts freeOrder, int freeCount) {
+        this.cols = cols;
+        this.rows = rows;
+        this.initialDelay = initialDelay;
+        this.config = config;
+        this.seed = seed;
+        this.randomState = randomState;
+        this.direction = direction;
+        this.pendingDirection = pendingDirection;
+        this.running = running;
+        this.bodyParts = bodyParts;
+        this.foodEaten = foodEaten;
+        this.food = food;
+        this.powerUp = powerUp;
+        this.currentDelay = currentDelay;
+        this.tickCount = tickCount;
+        this.gameTime = gameTime;
+        this.timers = timers;
+        this.body = body;
+        this.head = head;
+        this.length = length;
+        this.freeOrder = freeOrder;
+        this.freeCount = freeOrder == null ? 0 : freeCount;
+    }
+
+    // A fresh engine set up to continue this game.
+    public GameEngine toEngine() {
+        GameEngine engine = new GameEngine(cols, rows, initialDelay, config);
+        engine.restore(this);
+        return engine;
+    }
+
+    // Segment 0 is the head.
+    public int getBodyCell(int i) {
+        return body.get((head + i) & (body.size() - 1));
+    }
+
+    public int getLength() { return length; }
+    public int getFoodEaten() { return foodEaten; }
+    public long getTickCount() { return tickCount; }
+    public boolean isRunning() { return running; }
+
+    // Direction from one cell to a neighbouring one, or null if they are not adjacent.
+    private Direction step(int from, int to) {
+        int dx = to % cols - from % cols;
+        int dy = to / cols - from / cols;
+        for (Direction d : DIRECTIONS) {
+            if (d.dx == dx && d.dy == dy) return d;
+        }
+        return null;
+    }
+
+    private boolean isConnected() {
+        for (int i = 1; i < length; i++) {
+            if (step(getBodyCell(i - 1), getBodyCell(i)) == null) return false;
+        }
+        return true;
+    }
+
+    private int bodySize(boolean packed) {
+        int segments = Math.max(0, length - 1);
+        return packed ? 8 * ((segments + 31) / 32) : 4 * segments;
+    }
+
+    public int encodedSize() {
+        return HEADER_SIZE + bodySize(isConnected()) + 4 * freeCount
+                + 8 * timers.length + 4;
+    }
+
+    // Writes the save at the buffer's position and returns the buffer, replaced by a
+    // larger direct buffer if this one is too small.
+    public ByteBuffer encode(ByteBuffer out) {
+        boolean packed = isConnected();
+        int size = HEADER_SIZE + bodySize(packed) + 4 * freeCount + 8 * timers.length + 4;
+        if (out.remaining() < size) {
+            int capacity = Math.max(out.capacity() * 2, out.position() + size);
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        int start = out.position();
+        out.put(MAGIC);
+        out.putShort((short) VERSION);
+        out.put((byte) (packed ? PACKED : RAW));
+        out.put((byte) ((running ? 1 : 0) | (hasTimer(GameEngine.SPEED_BOOST_ENDS) ? 2 : 0)
+                | (hasTimer(GameEngine.MULTIPLIER_ENDS) ? 4 : 0)));
+        out.putInt(cols);
+        out.putInt(rows);
+        out.putInt(initialDelay);
+        out.putInt(config.easyDelay);
+        out.putInt(config.normalDelay);
+        out.putInt(config.hardDelay);
+        out.putInt(config.powerUpChancePercent);
+        out.putInt(config.effectDurationMillis);
+        out.putInt(config.speedUpEveryFood);
+        out.putInt(config.speedUpStepMillis);
+        out.putInt(config.minDelay);
+        out.putLong(seed);
+        out.putLong(randomState);
+        out.put((byte) direction.ordinal());
+        out.put((byte) (pendingDirection == null ? 255 : pendingDirection.ordinal()));
+        out.putShort((short) 0);
+        out.putInt(bodyParts);
+        out.putInt(foodEaten);
+        out.putInt(food);
+        out.putInt(powerUp);
+        out.putInt(currentDelay);
+        out.putLong(tickCount);
+        out.putLong(gameTime);
+        out.putInt(timers.length / 2);
+        out.putInt(0);
+        out.putInt(length);
+        out.putInt(length == 0 ? GameEngine.NONE : getBodyCell(0));
+        if (packed) {
+            long word = 0;
+            int prev = length == 0 ? 0 : getBodyCell(0);
+            for (int i = 1; i < length; i++) {
+                int cell = getBodyCell(i);
+                word |= (long) step(prev, cell).ordinal() << (2 * ((i - 1) & 31));
+                prev = cell;
+                if ((i & 31) == 0 || i == length - 1) {
+                    out.putLong(word);
+                    word = 0;
+                }
+            }
+        } else {
+            for (int i = 1; i < length; i++) {
+                out.putInt(getBodyCell(i));
+            }
+        }
+        out.putInt(freeCount);
+        if (freeCount > 0) {
+            freeOrder.copyTo(out.asIntBuffer(), freeCount);
+            out.position(out.position() + 4 * freeCount);
+        }
+        for (long value : timers) {
+            out.putLong(value);
+        }
+        CRC32 crc = new CRC32();
+        int end = out.position();
+        crc.update(out.duplicate().position(start).limit(end));
+        out.putInt((int) crc.getValue());
+        return out;
+    }
+
+    public static GameState decode(ByteBuffer in) throws IOException {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        int start = in.position();
+        if (in.remaining() < HEADER_SIZE + 4) throw new IOException("Save is truncated");
+        for (byte b : MAGIC) {
+            if (in.get() != b) throw new IOException("Not a saved game");
+        }
+        int version = in.getShort() & 0xffff;
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported save version " + version);
+        int encoding = in.get();
+        int flags = in.get();
+        int cols = in.getInt();
+        int rows = in.getInt();
+        int initialDelay = in.getInt();
+        GameConfig config = new GameConfig(in.getInt(), in.getInt(), in.getInt(), in.getInt(),
+                in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        long seed = in.getLong();
+        long randomState = in.getLong();
+        Direction direction = DIRECTIONS[in.get() & 3];
+        int pending = in.get() & 0xff;
+        in.getShort();
+        int bodyParts = in.getInt();
+        int foodEaten = in.getInt();
+        int food = in.getInt();
+        int powerUp = in.getInt();
+        int currentDelay = in.getInt();
+        long tickCount = in.getLong();
+        long gameTime = in.getLong();
+        long powerUpTimer = 0;
+        int timerCount = 0;
+        if (version == 1) {
+            powerUpTimer = in.getLong();
+        } else {
+            timerCount = in.getInt();
+            in.getInt();
+        }
+        int length = in.getInt();
+        int headCell = in.getInt();
+        if (cols < 8 || rows < 2 || cols > GameEngine.MAX_SIZE || rows > GameEngine.MAX_SIZE
+                || length < 0 || length > cols * rows) {
+            throw new IOException("Corrupt save header");
+        }
+        if (timerCount < 0 || timerCount > in.remaining() / 16) {
+            throw new IOException("Corrupt save timers");
+        }
+        int segments = Math.max(0, length - 1);
+        int bodyBytes = encoding == PACKED ? 8 * ((segments + 31) / 32) : 4 * segments;
+        if (in.remaining() < bodyBytes + 8) throw new IOException("Save is truncated");
+        int freeCount = in.getInt(in.position() + bodyBytes);
+        if (freeCount < 0 || freeCount > cols * rows) throw new IOException("Corrupt save body");
+        int dataBytes = bodyBytes + 4 + 4 * freeCount + 16 * timerCount;
+        if (in.remaining() < dataBytes + 4) throw new IOException("Save is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().position(start).limit(in.position() + dataBytes));
+        if (in.getInt(in.position() + dataBytes) != (int) crc.getValue()) throw new IOException("Save checksum mismatch");
+
+        PagedInts body = new PagedInts(Math.max(64, Integer.highestOneBit(Math.max(1, length - 1)) << 1));
+        if (length > 0) body.set(0, headCell);
+        if (encoding == PACKED) {
+            long[] words = new long[(segments + 31) / 32];
+            LongBuffer view = in.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            view.get(words);
+            int cell = headCell;
+            for (int i = 1; i < length; i++) {
+                Direction d = DIRECTIONS[(int) (words[(i - 1) >> 5] >>> (2 * ((i - 1) & 31))) & 3];
+                cell += d.dy * cols + d.dx;
+                body.set(i, cell);
+            }
+        } else if (encoding == RAW) {
+            IntBuffer view = in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            for (int i = 1; i < length; i++) {
+                body.set(i, view.get());
+            }
+        } else {
+            throw new IOException("Unknown body encoding " + encoding);
+        }
+        in.position(in.position() + bodyBytes + 4);
+        PagedInts freeOrder = null;
+        if (freeCount > 0) {
+            freeOrder = new PagedInts(freeCount);
+            freeOrder.copyFrom(in.asIntBuffer(), freeCount);
+        }
+        in.position(in.position() + 4 * freeCount);
+        long[] timers = new long[2 * timerCount];
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = in.getLong();
+        }
+        in.position(in.position() + 4);
+        if (version == 1) {
+            timers = versionOneTimers(config, flags, powerUp, currentDelay, tickCount, gameTime, powerUpTimer);
+        }
+        return new GameState(cols, rows, initialDelay, config, seed, randomState, direction,
+                pending == 255 ? null : DIRECTIONS[pending & 3], (flags & 1) != 0, bodyParts, foodEaten,
+                food, powerUp, currentDelay, tickCount, gameTime, timers, body, 0, length, freeOrder, freeCount);
+    }
+
+    // Version 1 kept one timer for the power-up and both effects: all of them ended on
+    // the first tick more than the effect duration after powerUpTimer.
+    private static long[] versionOneTimers(GameConfig config, int flags, int powerUp, int currentDelay,
+                                           long tickCount, long gameTime, long powerUpTimer) {
+        int tickDelay = (flags & 2) != 0 ? currentDelay / 2 : currentDelay;
+        long remaining = config.effectDurationMillis - (gameTime - powerUpTimer);
+        long due = tickCount + Math.max(1, remaining / Math.max(1, tickDelay) + 1);
+        int[] kinds = {GameEngine.POWER_UP_EXPIRES, GameEngine.SPEED_BOOST_ENDS, GameEngine.MULTIPLIER_ENDS};
+        boolean[] pending = {powerUp != GameEngine.NONE, (flags & 2) != 0, (flags & 4) != 0};
+        long[] timers = new long[6];
+        int n = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (!pending[i]) continue;
+            int payload = kinds[i] == GameEngine.POWER_UP_EXPIRES ? powerUp : 0;
+            timers[n++] = due;
+            timers[n++] = (long) kinds[i] << 32 | (payload & 0xffffffffL);
+        }
+        return Arrays.copyOf(timers, n);
+    }
+
+    private boolean hasTimer(int kind) {
+        for (int i = 1; i < timers.length; i += 2) {
+            if ((int) (timers[i] >> 32) == kind) return true;
+        }
+        return false;
+    }
+
+    // Reads the whole file into one direct buffer and decodes it.
+    public static GameState load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Save too large: " + size + " bytes");
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // a regular file fills the buffer in one read
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Read-only view of a game that the renderer can draw: the live engine or a snapshot.
+public interface GameView {
+    int getCols();
+
+    int getRows();
+
+    int getHead();
+
+    int getFood();
+
+    int getPowerUp();
+
+    int getFoodEaten();
+
+    boolean isRunning();
+
+    boolean isSpeedBoostActive();
+
+    boolean isOccupied(int cell);
+
+    // Level walls, which also count as occupied.
+    default boolean isWall(int cell) {
+        return false;
+    }
+
+    // Cells vacated or passed over since the previous view, beyond head, food and power-up.
+    int getDirtyCellCount();
+
+    int getDirtyCell(int i);
+
+    default int x(int cell) {
+        return cell % getCols();
+    }
+
+    default int y(int cell) {
+        return cell / getCols();
+    }
+}
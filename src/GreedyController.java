@@ -0,0 +1,44 @@
+// Scripted player: of the moves that do not hit the body, a wall or the board edge on
+// the very next tick, takes the one that leaves the head nearest the food (Manhattan
+// distance); ties go to the most room from a level's walls, then to the current
+// direction. Returns null, keeping the direction, when no move is safe.
+public class GreedyController implements Controller {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Override
+    public Direction nextDirection(GameEngine engine) {
+        int head = engine.getHead();
+        int food = engine.getFood();
+        Direction current = engine.getDirection();
+        Level level = engine.getLevel();
+        Direction best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        int bestRoom = -1;
+        for (Direction d : DIRECTIONS) {
+            if (d.isOpposite(current) || !isSafe(engine, head, d)) continue;
+            int x = engine.x(head) + d.dx;
+            int y = engine.y(head) + d.dy;
+            int distance = food == GameEngine.NONE ? 0
+                    : Math.abs(engine.x(food) - x) + Math.abs(engine.y(food) - y);
+            int room = level == null ? 0 : level.distanceToWall(engine.cell(x, y));
+            if (distance < bestDistance || (distance == bestDistance
+                    && (room > bestRoom || (room == bestRoom && d == current)))) {
+                best = d;
+                bestDistance = distance;
+                bestRoom = room;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isSafe(GameEngine engine, int head, Direction d) {
+        int x = engine.x(head) + d.dx;
+        int y = engine.y(head) + d.dy;
+        if (x < 0 || y < 0 || x >= engine.getCols() || y >= engine.getRows()) return false;
+        int cell = engine.cell(x, y);
+        // The tail moves out of the way this tick unless the snake is growing
+        boolean tailLeaves = engine.getBodyLength() >= engine.getBodyParts()
+                && cell == engine.getBodyCell(engine.getBodyLength() - 1);
+        return !engine.isOccupied(cell) || tailLeaves;
+    }
+}
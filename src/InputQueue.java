@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded lock-free queue of steering keys from one producer (the EDT) to one consumer
+// (whatever thread ticks the engine). Unlike a single pending direction, quick presses
+// inside one tick are all kept: UP then LEFT turns the corner over two ticks instead of
+// losing the UP. Each entry carries the nanoTime of the key press, so the time from
+// key to move is known when it is applied.
+//
+// The producer writes the slot and then publishes it by advancing tail with a release
+// store; the consumer reads tail with acquire, reads the slot and frees it by advancing
+// head the same way. Neither side ever writes the other's index.
+public class InputQueue {
+    private final Direction[] directions;
+    private final long[] pressedAt;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, written by the producer
+    private volatile long dropped;  // presses lost because the queue was full
+    private volatile long rejected; // presses skipped at dequeue as a reversal or no turn
+
+    public InputQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        directions = new Direction[capacity];
+        pressedAt = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    // Producer: queues a key press; returns false (and drops it) if the queue is full.
+    public boolean offer(Direction direction, long nanos) {
+        long t = tail.get();
+        if (t - head.getAcquire() == directions.length) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        directions[slot] = direction;
+        pressedAt[slot] = nanos;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    // Consumer, once per tick before engine.tick(): the oldest queued direction that the
+    // engine accepts as a turn from its current one, or null. Presses that would reverse
+    // the snake or keep it going the same way are consumed and skipped, so they do not
+    // hold up the turn queued behind them. The rest stays queued for the following ticks,
+    // one turn per tick.
+    public Direction poll(GameEngine engine) {
+        Direction current = engine.getDirection();
+        long h = head.get();
+        long t = tail.getAcquire();
+        while (h != t) {
+            int slot = (int) h & mask;
+            Direction direction = directions[slot];
+            long nanos = pressedAt[slot];
+            directions[slot] = null;
+            head.setRelease(++h);
+            if (direction != current && engine.isValidDirectionChange(current, direction)) {
+                if (Telemetry.enabled) Telemetry.inputApplied(nanos);
+                return direction;
+            }
+            rejected++;
+        }
+        return null;
+    }
+
+    // Consumer: drops everything queued, e.g. while the autopilot steers.
+    public void clear() {
+        long t = tail.getAcquire();
+        for (long h = head.get(); h != t; h++) {
+            directions[(int) h & mask] = null;
+        }
+        head.setRelease(t);
+    }
+
+    public int size() {
+        return (int) (tail.getAcquire() - head.getAcquire());
+    }
+
+    public String getStats() {
+        return "queued=" + tail.get() + " dropped=" + dropped + " rejected=" + rejected;
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Score indexes per speed tier (the starting delay picked in SpeedSelectionPanel) plus one
+// over every tier. The HUD text for a tier is cached and only rebuilt after that tier's
+// index has changed.
+public class Leaderboard {
+    public static final int ALL_TIERS = -1;
+    private static final int HUD_ENTRIES = 3;
+
+    private static final class Tier {
+        final ScoreIndex index = new ScoreIndex();
+        String hudText; // null when stale
+    }
+
+    private final Map<Integer, Tier> tiers = new HashMap<>();
+    private final Tier all = new Tier();
+    private final int[] topBuffer = new int[HUD_ENTRIES];
+
+    public synchronized void add(int score, int delay) {
+        all.index.add(score);
+        all.hudText = null;
+        Tier tier = tiers.computeIfAbsent(delay, d -> new Tier());
+        tier.index.add(score);
+        tier.hudText = null;
+    }
+
+    public synchronized void clear() {
+        tiers.clear();
+        all.index.clear();
+        all.hudText = null;
+    }
+
+    // The best scores of a tier as "a, b, c", or "0" if it has none.
+    public synchronized String getHudText(int delay) {
+        Tier tier = tier(delay);
+        if (tier == null) return "0";
+        if (tier.hudText == null) {
+            int count = tier.index.top(topBuffer);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(topBuffer[i]);
+            }
+            tier.hudText = count == 0 ? "0" : sb.toString();
+        }
+        return tier.hudText;
+    }
+
+    public synchronized long rank(int score, int delay) {
+        Tier tier = tier(delay);
+        return tier == null ? 1 : tier.index.rank(score);
+    }
+
+    public synchronized double percentile(int score, int delay) {
+        Tier tier = tier(delay);
+        return tier == null ? 100 : tier.index.percentile(score);
+    }
+
+    public synchronized long size(int delay) {
+        Tier tier = tier(delay);
+        return tier == null ? 0 : tier.index.size();
+    }
+
+    public synchronized int best(int delay) {
+        Tier tier = tier(delay);
+        return tier == null ? 0 : tier.index.best();
+    }
+
+    public synchronized int[] top(int delay, int n) {
+        Tier tier = tier(delay);
+        if (tier == null) return new int[0];
+        int[] out = new int[(int) Math.min(n, tier.index.size())];
+        tier.index.top(out);
+        return out;
+    }
+
+    private Tier tier(int delay) {
+        return delay == ALL_TIERS ? all : tiers.get(delay);
+    }
+}
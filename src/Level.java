@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A level map: wall cells and spawn zones on a board of a fixed size. The file is
+// memory-mapped read-only and everything is read straight from the mapping, so opening
+// a level does no parsing, copies nothing and takes the same time for any size.
+//
+// File format, little-endian:
+//   "SNKL" version(u16) 0(u16) cols rows startCell wallCount
+//   cells(u8 each, row by row: 0 empty, 1 wall, 2 spawn)
+//   distance(u8 each) padding to 4 bytes
+//   walls(i32 each, ascending)
+// The distance field holds, for every cell, the number of steps to the nearest wall or
+// board edge (0 on a wall, 1 next to one), saturating at 255. It, the wall list and the
+// start cell are worked out once by write(), so a map of millions of cells opens in
+// microseconds and AI and spawn code can look the distance up in O(1). The snake starts
+// on the spawn cell furthest from any wall, or anywhere furthest from one if the level
+// has no spawn zones.
+//
+// Usage: java -cp out Level map.txt map.snkl
+// converts a text map ('#' wall, 'S' spawn, anything else empty; lines are padded to the
+// longest) to a level file. Play it with -Dsnake.level=map.snkl.
+public final class Level {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'L'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    public static final byte EMPTY = 0;
+    public static final byte WALL = 1;
+    public static final byte SPAWN = 2;
+    private static final int MAX_DISTANCE = 255;
+    private static final int START_CLEARANCE = 3; // the head and the two segments behind it fit
+
+    private final Path path;
+    private final int cols;
+    private final int rows;
+    private final int start;
+    private final ByteBuffer cells;    // views of the mapped file
+    private final ByteBuffer distance;
+    private final IntBuffer walls;
+
+    private Level(Path path, int cols, int rows, int start, ByteBuffer cells, ByteBuffer distance, IntBuffer walls) {
+        this.path = path;
+        this.cols = cols;
+        this.rows = rows;
+        this.start = start;
+        this.cells = cells;
+        this.distance = distance;
+        this.walls = walls;
+    }
+
+    public static Level open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new IOException("Not a level file: " + path);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            for (byte b : MAGIC) {
+                if (map.get() != b) throw new IOException("Not a level file: " + path);
+            }
+            int version = map.getShort() & 0xffff;
+            if (version != VERSION) throw new IOException("Unsupported level version " + version);
+            map.getShort();
+            int cols = map.getInt();
+            int rows = map.getInt();
+            int start = map.getInt();
+            int wallCount = map.getInt();
+            if (cols < 8 || rows < 2 || cols > GameEngine.MAX_SIZE || rows > GameEngine.MAX_SIZE) {
+                throw new IOException("Level size out of range: " + cols + "x" + rows);
+            }
+            int cellCount = cols * rows;
+            if (start < 0 || start >= cellCount || start % cols < 2 || wallCount < 0 || wallCount > cellCount) {
+                throw new IOException("Corrupt level header in " + path);
+            }
+            long expected = wallsOffset(cellCount) + 4L * wallCount;
+            if (size != expected) {
+                throw new IOException("Level " + path + " should be " + expected + " bytes, is " + size);
+            }
+            ByteBuffer cells = map.slice(HEADER_SIZE, cellCount);
+            ByteBuffer distance = map.slice(HEADER_SIZE + cellCount, cellCount);
+            IntBuffer walls = map.slice(wallsOffset(cellCount), 4 * wallCount)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            return new Level(path, cols, rows, start, cells, distance, walls);
+        }
+    }
+
+    private static int wallsOffset(int cellCount) {
+        return (HEADER_SIZE + 2 * cellCount + 3) & ~3;
+    }
+
+    // Writes a level, working out its distance field, wall list and start cell.
+    public static void write(Path path, int cols, int rows, byte[] cells) throws IOException {
+        if (cells.length != cols * rows) throw new IllegalArgumentException("Expected " + cols * rows + " cells");
+        byte[] distance = new byte[cells.length];
+        int[] walls = computeDistances(cols, rows, cells, distance);
+        int start = findStart(cells, distance);
+        if (start == GameEngine.NONE) {
+            throw new IllegalArgumentException("Level has no room to start a snake");
+        }
+        int size = wallsOffset(cells.length) + 4 * walls.length;
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(MAGIC).putShort((short) VERSION).putShort((short) 0);
+        out.putInt(cols).putInt(rows).putInt(start).putInt(walls.length);
+        out.put(cells).put(distance);
+        out.position(wallsOffset(cells.length));
+        out.asIntBuffer().put(walls);
+        out.position(0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) channel.write(out);
+        }
+    }
+
+    // Manhattan distance transform: a forward pass takes the distance from above and the
+    // left, a backward pass from below and the right. Returns the wall cells.
+    private static int[] computeDistances(int cols, int rows, byte[] cells, byte[] distance) {
+        int[] found = new int[64];
+        int count = 0;
+        for (int y = 0, c = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++, c++) {
+                int d;
+                if (cells[c] == WALL) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = c;
+                    d = 0;
+                } else {
+                    d = Math.min(x + 1, y + 1); // the board edge counts as a wall
+                    if (x > 0) d = Math.min(d, (distance[c - 1] & 0xff) + 1);
+                    if (y > 0) d = Math.min(d, (distance[c - cols] & 0xff) + 1);
+                }
+                distance[c] = (byte) Math.min(d, MAX_DISTANCE);
+            }
+        }
+        for (int y = rows - 1, c = cols * rows - 1; y >= 0; y--) {
+            for (int x = cols - 1; x >= 0; x--, c--) {
+                int d = Math.min(distance[c] & 0xff, Math.min(cols - x, rows - y));
+                if (x < cols - 1) d = Math.min(d, (distance[c + 1] & 0xff) + 1);
+                if (y < rows - 1) d = Math.min(d, (distance[c + cols] & 0xff) + 1);
+                distance[c] = (byte) d;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // The spawn cell with the most room around it, or any cell if there are no spawn zones.
+    private static int findStart(byte[] cells, byte[] distance) {
+        int best = GameEngine.NONE;
+        int bestSpawn = GameEngine.NONE;
+        for (int c = 0; c < distance.length; c++) {
+            int d = distance[c] & 0xff;
+            if (d < START_CLEARANCE) continue;
+            if (best == GameEngine.NONE || d > (distance[best] & 0xff)) best = c;
+            if (cells[c] == SPAWN && (bestSpawn == GameEngine.NONE || d > (distance[bestSpawn] & 0xff))) {
+                bestSpawn = c;
+            }
+        }
+        return bestSpawn != GameEngine.NONE ? bestSpawn : best;
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public Path getPath() { return path; }
+
+    public boolean isWall(int cell) {
+        return cells.get(cell) == WALL;
+    }
+
+    public boolean isSpawn(int cell) {
+        return cells.get(cell) == SPAWN;
+    }
+
+    // Steps from the cell to the nearest wall or board edge, 0 on a wall, at most 255.
+    public int distanceToWall(int cell) {
+        return distance.get(cell) & 0xff;
+    }
+
+    public int getWallCount() {
+        return walls.limit();
+    }
+
+    public int getWall(int i) {
+        return walls.get(i);
+    }
+
+    // Head cell for a new game; the snake starts heading right with at least
+    // START_CLEARANCE free cells in every direction.
+    public int getStartCell() {
+        return start;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java Level map.txt map.snkl");
+            System.exit(2);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        int cols = 0;
+        for (String line : lines) cols = Math.max(cols, line.length());
+        int rows = lines.size();
+        byte[] cells = new byte[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                char ch = line.charAt(x);
+                cells[y * cols + x] = ch == '#' ? WALL : ch == 'S' ? SPAWN : EMPTY;
+            }
+        }
+        Path out = Paths.get(args[1]);
+        write(out, cols, rows, cells);
+        Level level = open(out);
+        System.out.println("Wrote " + out + ": " + cols + "x" + rows + ", " + level.getWallCount() + " walls, start at "
+                + level.getStartCell() % cols + "," + level.getStartCell() / cols);
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Loopback load test for GameServer. Opens simulated players in steps; every player
+// follows its head from the deltas, turns away from walls and now and then at random,
+// and restarts when it dies. Each input carries a stamp, and the time until the server
+// echoes it in a DELTA is that player's input latency (it includes the wait for the
+// next tick, so it is at least part of a tick delay).
+//
+// Usage: java -cp out LoadGenerator [--host localhost] [--port 7777] [--embedded]
+//            [--clients 5000] [--step 250] [--interval 5] [--delay 100] [--slo ms]
+// The client count grows by --step every --interval seconds until --clients is reached
+// or the step's p99 latency exceeds --slo (default: delay + 50 ms).
+public class LoadGenerator {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Selector selector;
+    private final InetSocketAddress address;
+    private final int delay;
+    private final List<Client> clients = new ArrayList<>();
+    private final Histogram latency = new Histogram();
+    private final GameRandom random = new GameRandom(System.nanoTime());
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private long bytesIn;
+    private long deltas;
+    private long games;
+    private int failures;
+
+    private final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(NetProtocol.MAX_FRAME + 2);
+        final ByteBuffer out = ByteBuffer.allocate(256);
+        int cols;
+        int rows;
+        int x;
+        int y;
+        Direction direction;
+        boolean running;
+        long stamp;
+        long sentAt; // nanos of the unacknowledged input, 0 if none
+        long latencyCount;
+        long latencySum;
+        long latencyMax;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void send(byte type, long value, long stamp) {
+            int start = NetProtocol.beginFrame(out, type);
+            if (value >= 0) NetProtocol.putVarint(out, value);
+            if (stamp >= 0) NetProtocol.putVarint(out, stamp);
+            NetProtocol.endFrame(out, start);
+        }
+
+        void onStart(ByteBuffer frame) {
+            cols = NetProtocol.getInt(frame);
+            rows = NetProtocol.getInt(frame);
+            direction = DIRECTIONS[NetProtocol.getInt(frame)];
+            int count = NetProtocol.getInt(frame);
+            int head = NetProtocol.getInt(frame);
+            x = head % cols;
+            y = head / cols;
+            running = true;
+            sentAt = 0;
+            games++;
+            frame.position(frame.limit()); // the rest of the body is not needed
+            if (count == 0) running = false;
+        }
+
+        void onDelta(ByteBuffer frame, long now) {
+            deltas++;
+            int flags = frame.get() & 0xff;
+            direction = DIRECTIONS[flags & NetProtocol.DIRECTION_MASK];
+            x = Math.max(0, Math.min(x + direction.dx, cols - 1));
+            y = Math.max(0, Math.min(y + direction.dy, rows - 1));
+            if ((flags & NetProtocol.FOOD) != 0) NetProtocol.getVarint(frame);
+            if ((flags & NetProtocol.POWER_UP) != 0) NetProtocol.getVarint(frame);
+            if ((flags & NetProtocol.SCORE) != 0) NetProtocol.getVarint(frame);
+            if ((flags & NetProtocol.ACK) != 0 && NetProtocol.getVarint(frame) == stamp && sentAt != 0) {
+                long elapsed = now - sentAt;
+                latency.record(elapsed);
+                latencyCount++;
+                latencySum += elapsed;
+                latencyMax = Math.max(latencyMax, elapsed);
+                sentAt = 0;
+            }
+            if ((flags & NetProtocol.STATUS) != 0) {
+                running = (NetProtocol.getInt(frame) & NetProtocol.RUNNING) != 0;
+                if (!running) {
+                    send(NetProtocol.RESTART, -1, -1);
+                    return;
+                }
+            }
+            steer(now);
+        }
+
+        // Turns when the next step would leave the board, otherwise one tick in eight.
+        void steer(long now) {
+            if (sentAt != 0) return; // the server keeps only the latest input per tick
+            int nx = x + direction.dx;
+            int ny = y + direction.dy;
+            boolean blocked = nx < 0 || ny < 0 || nx >= cols || ny >= rows;
+            if (!blocked && random.nextInt(8) != 0) return;
+            Direction turn = DIRECTIONS[random.nextInt(4)];
+            for (int i = 0; i < 4; i++, turn = DIRECTIONS[(turn.ordinal() + 1) % 4]) {
+                if (turn == direction || turn.isOpposite(direction)) continue;
+                nx = x + turn.dx;
+                ny = y + turn.dy;
+                if (nx >= 0 && ny >= 0 && nx < cols && ny < rows) break;
+            }
+            send(NetProtocol.INPUT, turn.ordinal(), ++stamp);
+            sentAt = now;
+        }
+
+        void resetStats() {
+            latencyCount = 0;
+            latencySum = 0;
+            latencyMax = 0;
+        }
+    }
+
+    public LoadGenerator(InetSocketAddress address, int delay) throws IOException {
+        this.selector = Selector.open();
+        this.address = address;
+        this.delay = delay;
+    }
+
+    private void connect(int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.socket().setTcpNoDelay(true);
+                channel.configureBlocking(false);
+                Client client = new Client(channel);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                client.send(NetProtocol.HELLO, delay, -1);
+                flush(client);
+                clients.add(client);
+            } catch (IOException e) {
+                failures++;
+                System.err.println("Connect failed after " + clients.size() + " clients: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void flush(Client client) throws IOException {
+        if (client.out.position() == 0) return;
+        client.out.flip();
+        client.channel.write(client.out);
+        client.out.compact();
+    }
+
+    // Runs the selector loop for the given time.
+    private void pump(long nanos) throws IOException {
+        long end = System.nanoTime() + nanos;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            selector.select(Math.max(1, (end - now) / 1_000_000));
+            now = System.nanoTime();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                if (!key.isValid() || !key.isReadable()) continue;
+                readBuffer.clear();
+                int read = client.channel.read(readBuffer);
+                if (read < 0) {
+                    failures++;
+                    key.cancel();
+                    client.channel.close();
+                    continue;
+                }
+                bytesIn += read;
+                readBuffer.flip();
+                client.in.put(readBuffer);
+                client.in.flip();
+                while (client.in.remaining() >= 2) {
+                    int length = client.in.getShort(client.in.position()) & 0xffff;
+                    if (client.in.remaining() < 2 + length) break;
+                    int frameEnd = client.in.position() + 2 + length;
+                    client.in.position(client.in.position() + 2);
+                    byte type = client.in.get();
+                    ByteBuffer frame = client.in.slice();
+                    frame.limit(frameEnd - client.in.position());
+                    if (type == NetProtocol.START) {
+                        client.onStart(frame);
+                    } else if (type == NetProtocol.DELTA && client.direction != null) {
+                        client.onDelta(frame, now);
+                    }
+                    client.in.position(frameEnd);
+                }
+                client.in.compact();
+                flush(client);
+            }
+        }
+    }
+
+    public int run(int maxClients, int step, int intervalSeconds, double sloMillis) throws IOException {
+        int best = 0;
+        System.out.printf("%8s %10s %8s %10s %10s %10s %12s %12s%n",
+                "clients", "ticks/s", "B/tick", "p50 ms", "p99 ms", "max ms", "worst avg", "worst max");
+        while (clients.size() < maxClients) {
+            connect(Math.min(step, maxClients - clients.size()));
+            pump(1_000_000_000L); // let the new clients settle in
+            latency.reset();
+            for (Client client : clients) client.resetStats();
+            long startBytes = bytesIn;
+            long startDeltas = deltas;
+            pump(intervalSeconds * 1_000_000_000L);
+
+            long stepDeltas = deltas - startDeltas;
+            Client worst = null;
+            for (Client client : clients) {
+                if (client.latencyCount == 0) continue;
+                if (worst == null || client.latencyMax > worst.latencyMax) worst = client;
+            }
+            double p99 = latency.getValueAtPercentile(99) / 1e6;
+            System.out.printf("%8d %10.0f %8.2f %10.2f %10.2f %10.2f %12.2f %12.2f%n",
+                    clients.size(), stepDeltas / (double) intervalSeconds,
+                    stepDeltas == 0 ? 0 : (bytesIn - startBytes) / (double) stepDeltas,
+                    latency.getValueAtPercentile(50) / 1e6, p99, latency.getMax() / 1e6,
+                    worst == null ? 0 : worst.latencySum / (double) worst.latencyCount / 1e6,
+                    worst == null ? 0 : worst.latencyMax / 1e6);
+            if (failures > 0 || latency.getCount() == 0 || p99 > sloMillis) break;
+            best = clients.size();
+        }
+        System.out.println("Games started: " + games + ", connection failures: " + failures);
+        System.out.println("Max clients within p99 <= " + sloMillis + " ms: " + best);
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = NetProtocol.DEFAULT_PORT;
+        boolean embedded = false;
+        int maxClients = 5000;
+        int step = 250;
+        int interval = 5;
+        int delay = GameConfig.DEFAULT.normalDelay;
+        double slo = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--embedded": embedded = true; break;
+                case "--clients": maxClients = Integer.parseInt(args[++i]); break;
+                case "--step": step = Integer.parseInt(args[++i]); break;
+                case "--interval": interval = Integer.parseInt(args[++i]); break;
+                case "--delay": delay = Integer.parseInt(args[++i]); break;
+                case "--slo": slo = Double.parseDouble(args[++i]); break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+        if (slo < 0) slo = delay + 50;
+        GameServer server = null;
+        if (embedded) {
+            server = new GameServer(port, GamePanel.SCREEN_WIDTH / GamePanel.UNIT_SIZE, Integer.MAX_VALUE);
+            port = server.getPort();
+            Thread thread = new Thread(server, "game-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        new LoadGenerator(new InetSocketAddress(host, port), delay).run(maxClients, step, interval, slo);
+        if (server != null) {
+            System.out.println("Server: " + server.getStats());
+            server.stop();
+        }
+        System.exit(0);
+    }
+}
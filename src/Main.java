@@ -3,44 +3,107 @@ import java.awt.*;
 
 public class Main implements SpeedSelectionListener {
     private JFrame frame;
+    private Container host; // the frame's content pane, or the soak test's offscreen container
     private SpeedSelectionPanel speedSelectionPanel;
     private GamePanel gamePanel;
 
+    // java Main --arena [snakes] [worldSize] starts the multi-snake arena instead; the world
+    // is 16 to GameEngine.MAX_SIZE cells wide, with room for at least 8 cells per snake.
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--arena")) {
+            int requestedSnakes = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+            int requestedWorld = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+            int world = Math.max(16, Math.min(requestedWorld, GameEngine.MAX_SIZE));
+            int snakes = (int) Math.max(1, Math.min(requestedSnakes, (long) world * world / 8));
+            if (snakes != requestedSnakes || world != requestedWorld) {
+                System.err.println("Arena limited to " + snakes + " snakes in a " + world + "x" + world + " world");
+            }
+            SwingUtilities.invokeLater(() -> showArena(snakes, world));
+            return;
+        }
+        AssetManager.shared().preload(); // sounds, fonts, scores and the renderer load while the menu comes up
         SwingUtilities.invokeLater(() -> new Main().createAndShowGUI());
     }
 
+    private static void showArena(int snakes, int world) {
+        JFrame frame = new JFrame("Snake Game - Arena");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        ArenaPanel arena = new ArenaPanel(snakes, world, GameConfig.DEFAULT.normalDelay);
+        frame.add(arena, BorderLayout.CENTER);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        arena.requestFocusInWindow();
+    }
+
+    public Main() {
+    }
+
+    // Plays inside the given container instead of a window; used by SoakTest when headless.
+    Main(Container host) {
+        this.host = host;
+    }
+
     public void createAndShowGUI() {
         frame = new JFrame("Snake Game - Java DSA");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setResizable(false);
-        showSpeedSelectionScreen();
+        host = frame.getContentPane();
+        GameState saved = GamePanel.savedGame();
+        if (saved != null) {
+            System.out.println("Resuming saved game at score " + saved.getFoodEaten());
+            showGamePanel(new GamePanel(saved, v -> showSpeedSelectionScreen()));
+        } else {
+            showSpeedSelectionScreen();
+        }
         frame.setLocationRelativeTo(null);
     }
 
     public void showSpeedSelectionScreen() {
         if (gamePanel != null) {
-            frame.remove(gamePanel);
+            host.remove(gamePanel);
             gamePanel = null;
         }
         speedSelectionPanel = new SpeedSelectionPanel(this);
-        frame.add(speedSelectionPanel, BorderLayout.CENTER);
-        frame.pack();
-        frame.setVisible(true);
+        host.add(speedSelectionPanel, BorderLayout.CENTER);
+        show();
         speedSelectionPanel.requestFocusInWindow();
     }
 
     @Override
     public void onSpeedSelected(int delay) {
+        AssetManager.shared().markSpeedSelected();
         if (speedSelectionPanel != null) {
-            frame.remove(speedSelectionPanel);
+            host.remove(speedSelectionPanel);
             speedSelectionPanel = null;
         }
-        gamePanel = new GamePanel(delay, v -> showSpeedSelectionScreen()); // Lambda expression
-        frame.add(gamePanel, BorderLayout.CENTER);
-        frame.pack();
-        frame.revalidate();
-        frame.repaint();
+        showGamePanel(new GamePanel(delay, v -> showSpeedSelectionScreen())); // Lambda expression
+    }
+
+    private void showGamePanel(GamePanel panel) {
+        gamePanel = panel;
+        host.add(gamePanel, BorderLayout.CENTER);
+        show();
+        host.revalidate();
+        host.repaint();
         gamePanel.requestFocusInWindow();
     }
+
+    private void show() {
+        if (frame != null) {
+            frame.pack();
+            frame.setVisible(true);
+        } else {
+            host.validate();
+        }
+    }
+
+    GamePanel getGamePanel() {
+        return gamePanel;
+    }
+
+    Container getHost() {
+        return host;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+import java.nio.ByteBuffer;
+
+// Wire format shared by GameServer, RemoteGame and LoadGenerator. Every message is a
+// frame: u16 length of what follows, u8 type, payload. Payload integers are unsigned
+// LEB128 varints; cells are sent as cell + 1 so that NONE encodes as 0.
+//
+// Client to server:
+//   HELLO   delay                       start a game at this speed
+//   INPUT   direction stamp             steer; stamp is echoed back once the input is applied
+//   RESTART
+// Server to client:
+//   START   cols rows direction length cells(head first) food powerUp score status
+//   DELTA   flags [food] [powerUp] [score] [stamp] [status]
+//
+// A delta never carries cells of the body: the head always moves one step in the direction
+// held in the low flag bits (clamped to the board, as in GameEngine), and a removed tail is
+// always the client's current tail, so a normal tick costs four bytes.
+final class NetProtocol {
+    static final int DEFAULT_PORT = 7777;
+    static final int MAX_FRAME = 0xffff;
+
+    static final byte HELLO = 'H';
+    static final byte INPUT = 'I';
+    static final byte RESTART = 'R';
+    static final byte START = 'S';
+    static final byte DELTA = 'D';
+
+    static final int DIRECTION_MASK = 0x03;
+    static final int TAIL_REMOVED = 0x04;
+    static final int FOOD = 0x08;
+    static final int POWER_UP = 0x10;
+    static final int SCORE = 0x20;
+    static final int ACK = 0x40;
+    static final int STATUS = 0x80;
+
+    static final int RUNNING = 0x01;
+    static final int SPEED_BOOST = 0x02;
+    static final int SCORE_MULTIPLIER = 0x04;
+
+    private NetProtocol() {
+    }
+
+    static int status(GameEngine engine) {
+        return (engine.isRunning() ? RUNNING : 0) | (engine.isSpeedBoostActive() ? SPEED_BOOST : 0)
+                | (engine.isScoreMultiplierActive() ? SCORE_MULTIPLIER : 0);
+    }
+
+    // Reserves the length field and writes the type; finish with endFrame.
+    static int beginFrame(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put(type);
+        return start;
+    }
+
+    static void endFrame(ByteBuffer out, int start) {
+        out.putShort(start, (short) (out.position() - start - 2));
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+            shift += 7;
+        }
+    }
+
+    static int getInt(ByteBuffer in) {
+        return (int) getVarint(in);
+    }
+
+    // Start state for a fresh or restarted game.
+    static void writeStart(ByteBuffer out, GameEngine engine) {
+        int start = beginFrame(out, START);
+        putVarint(out, engine.getCols());
+        putVarint(out, engine.getRows());
+        putVarint(out, engine.getDirection().ordinal());
+        putVarint(out, engine.getBodyLength());
+        for (int i = 0; i < engine.getBodyLength(); i++) {
+            putVarint(out, engine.getBodyCell(i));
+        }
+        putVarint(out, engine.getFood() + 1);
+        putVarint(out, engine.getPowerUp() + 1);
+        putVarint(out, engine.getFoodEaten());
+        putVarint(out, status(engine));
+        endFrame(out, start);
+    }
+
+    // Largest START frame for a board, to size buffers.
+    static int maxStartSize(int cells) {
+        return 3 + 5 * 8 + 5 * cells;
+    }
+}
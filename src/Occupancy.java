@@ -0,0 +1,26 @@
+// Which cells of the board the snake covers, plus uniform sampling of a free cell.
+// OccupancyGrid is dense for normal boards; ChunkedOccupancy is sparse for huge worlds.
+public interface Occupancy {
+    int DENSE_LIMIT = 1 << 20; // larger boards use sparse chunked storage
+
+    static Occupancy forBoard(int cols, int rows) {
+        return cols * rows > DENSE_LIMIT ? new ChunkedOccupancy(cols, rows) : new OccupancyGrid(cols * rows);
+    }
+
+    void clear();
+
+    boolean isOccupied(int cell);
+
+    void occupy(int cell);
+
+    void release(int cell);
+
+    int getFreeCount();
+
+    int size();
+
+    int sampleFree(GameRandom random);
+
+    // Like sampleFree, but never returns excluded.
+    int sampleFreeExcluding(int excluded, GameRandom random);
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+// Occupancy bitmap over the board plus a dense index of free cells, so membership
+// tests, updates and uniform sampling of a free cell are all O(1).
+public class OccupancyGrid implements Occupancy {
+    private final int size;
+    private final long[] bits;
+    private final PagedInts free;  // unoccupied cells, first freeCount entries are valid
+    private final int[] freeIndex; // position of a free cell inside free
+    private int freeCount;
+
+    public OccupancyGrid(int size) {
+        this.size = size;
+        this.bits = new long[(size + 63) >>> 6];
+        this.free = new PagedInts(size);
+        this.freeIndex = new int[size];
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        free.fillWithIndex();
+        for (int i = 0; i < size; i++) {
+            freeIndex[i] = i;
+        }
+        freeCount = size;
+    }
+
+    @Override
+    public boolean isOccupied(int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    @Override
+    public void occupy(int cell) {
+        if (isOccupied(cell)) return;
+        bits[cell >>> 6] |= 1L << cell;
+        int index = freeIndex[cell];
+        int last = free.get(--freeCount);
+        free.set(index, last);
+        freeIndex[last] = index;
+    }
+
+    @Override
+    public void release(int cell) {
+        if (!isOccupied(cell)) return;
+        bits[cell >>> 6] &= ~(1L << cell);
+        free.set(freeCount, cell);
+        freeIndex[cell] = freeCount++;
+    }
+
+    public long[] copyBits() {
+        return bits.clone();
+    }
+
+    // The order of the free index, which decides what sampling returns next; its first
+    // getFreeCount() entries are the free cells. A copy-on-write snapshot, O(size / 1024).
+    public PagedInts copyFreeOrder() {
+        return free.snapshot();
+    }
+
+    // Puts the free index back into a copied order of 'count' cells; exactly those cells
+    // must be free.
+    public void restoreFreeOrder(PagedInts order, int count) {
+        if (count != freeCount || count > order.size()) {
+            throw new IllegalArgumentException("Free order has " + count + " cells, board has " + freeCount);
+        }
+        for (int i = 0; i < count; i++) {
+            int cell = order.get(i);
+            if (isOccupied(cell)) throw new IllegalArgumentException("Cell " + cell + " is not free");
+            freeIndex[cell] = i;
+        }
+        free.copyFrom(order, count);
+    }
+
+    @Override
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int sampleFree(GameRandom random) {
+        return freeCount == 0 ? GameEngine.NONE : free.get(random.nextInt(freeCount));
+    }
+
+    // Samples a free cell other than excluded by parking excluded at the end of the index.
+    @Override
+    public int sampleFreeExcluding(int excluded, GameRandom random) {
+        if (excluded == GameEngine.NONE || isOccupied(excluded)) {
+            return sampleFree(random);
+        }
+        int count = freeCount - 1;
+        if (count == 0) return GameEngine.NONE;
+        int index = freeIndex[excluded];
+        int last = free.get(count);
+        free.set(index, last);
+        freeIndex[last] = index;
+        free.set(count, excluded);
+        freeIndex[excluded] = count;
+        return free.get(random.nextInt(count));
+    }
+}
@@ -0,0 +1,112 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+// Fixed-size int array stored in pages of PAGE ints, so a copy for saving costs O(pages)
+// rather than O(size): snapshot() shares every page with the copy it returns, and the
+// first write to a shared page copies that page alone. Pages written since the last
+// snapshot are owned by this array, marked with the snapshot count they were copied in.
+// A snapshot is never written.
+public final class PagedInts {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE - 1;
+
+    private final int size;
+    private final int[][] pages;
+    private final int[] owned; // snapshot count when each page was last copied
+    private int snapshots;
+
+    public PagedInts(int size) {
+        this.size = size;
+        int pageSize = Math.min(size, PAGE);
+        pages = new int[(size + PAGE - 1) >>> PAGE_BITS][];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = new int[pageSize];
+        }
+        owned = new int[pages.length];
+    }
+
+    // A writable copy of 'source' that shares its pages until they are written.
+    public PagedInts(PagedInts source) {
+        size = source.size;
+        pages = source.pages.clone();
+        owned = new int[pages.length];
+        Arrays.fill(owned, -1);
+    }
+
+    private PagedInts(int size, int[][] pages) {
+        this.size = size;
+        this.pages = pages;
+        this.owned = null;
+    }
+
+    public int get(int i) {
+        return pages[i >>> PAGE_BITS][i & PAGE_MASK];
+    }
+
+    public void set(int i, int value) {
+        int p = i >>> PAGE_BITS;
+        int[] page = owned[p] == snapshots ? pages[p] : writablePage(p);
+        page[i & PAGE_MASK] = value;
+    }
+
+    // Sets every value to its own index.
+    public void fillWithIndex() {
+        for (int p = 0; p < pages.length; p++) {
+            if (owned[p] != snapshots) {
+                pages[p] = new int[pages[p].length];
+                owned[p] = snapshots;
+            }
+            int[] page = pages[p];
+            int base = p << PAGE_BITS;
+            for (int i = 0; i < page.length; i++) {
+                page[i] = base + i;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // A read-only copy of the current values; later writes here do not show in it.
+    public PagedInts snapshot() {
+        snapshots++;
+        return new PagedInts(size, pages.clone());
+    }
+
+    // Writes the first 'count' values to the buffer.
+    public void copyTo(IntBuffer out, int count) {
+        for (int p = 0; count > 0; p++) {
+            int n = Math.min(count, pages[p].length);
+            out.put(pages[p], 0, n);
+            count -= n;
+        }
+    }
+
+    // Reads the first 'count' values from the buffer.
+    public void copyFrom(IntBuffer in, int count) {
+        for (int p = 0; count > 0; p++) {
+            int n = Math.min(count, pages[p].length);
+            in.get(writablePage(p), 0, n);
+            count -= n;
+        }
+    }
+
+    // Copies the first 'count' values of another array.
+    public void copyFrom(PagedInts source, int count) {
+        for (int p = 0; count > 0; p++) {
+            int n = Math.min(count, pages[p].length);
+            System.arraycopy(source.pages[p], 0, writablePage(p), 0, n);
+            count -= n;
+        }
+    }
+
+    private int[] writablePage(int p) {
+        if (owned[p] != snapshots) {
+            pages[p] = pages[p].clone();
+            owned[p] = snapshots;
+        }
+        return pages[p];
+    }
+}
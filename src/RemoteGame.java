@@ -0,0 +1,212 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// Client side of a game simulated by GameServer. A reader thread receives frames and
+// applies them on the EDT, where this view is read by the renderer; the local state is
+// only ever what the server sent, rebuilt from START and advanced by each DELTA.
+public class RemoteGame implements GameView {
+    private final SocketChannel channel;
+    private final int delay;
+    private final GameListener listener;
+    private final Runnable onUpdate;
+    private final ByteBuffer outBuffer = ByteBuffer.allocate(64);
+    private long nextStamp = 1;
+
+    // Game state, owned by the EDT
+    private int cols;
+    private int rows;
+    private Occupancy grid;
+    private int[] body = new int[64];
+    private int head;
+    private int length;
+    private Direction direction = Direction.RIGHT;
+    private int removedTail = GameEngine.NONE;
+    private int food = GameEngine.NONE;
+    private int powerUp = GameEngine.NONE;
+    private int foodEaten;
+    private int status;
+
+    public RemoteGame(String host, int port, int delay, GameListener listener, Runnable onUpdate) throws IOException {
+        this.delay = delay;
+        this.listener = listener;
+        this.onUpdate = onUpdate;
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        Thread reader = new Thread(this::readLoop, "net-client");
+        reader.setDaemon(true);
+        reader.start();
+        send(NetProtocol.HELLO, delay);
+    }
+
+    // Parses "host:port"; the port defaults to NetProtocol.DEFAULT_PORT.
+    public static RemoteGame connect(String address, int delay, GameListener listener, Runnable onUpdate) throws IOException {
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? address : address.substring(0, colon);
+        int port = colon < 0 ? NetProtocol.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+        return new RemoteGame(host, port, delay, listener, onUpdate);
+    }
+
+    public int getInitialDelay() {
+        return delay;
+    }
+
+    public void sendDirection(Direction direction) {
+        send(NetProtocol.INPUT, direction.ordinal());
+    }
+
+    public void restart() {
+        send(NetProtocol.RESTART, -1);
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+
+    private synchronized void send(byte type, int value) {
+        outBuffer.clear();
+        int start = NetProtocol.beginFrame(outBuffer, type);
+        if (value >= 0) NetProtocol.putVarint(outBuffer, value);
+        if (type == NetProtocol.INPUT) NetProtocol.putVarint(outBuffer, nextStamp++);
+        NetProtocol.endFrame(outBuffer, start);
+        outBuffer.flip();
+        try {
+            while (outBuffer.hasRemaining()) {
+                channel.write(outBuffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error sending to server: " + e.getMessage());
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocate(NetProtocol.MAX_FRAME + 2);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= 2) {
+                    int length = in.getShort(in.position()) & 0xffff;
+                    if (in.remaining() < 2 + length) break;
+                    in.position(in.position() + 2);
+                    byte[] frame = new byte[length];
+                    in.get(frame);
+                    SwingUtilities.invokeLater(() -> apply(ByteBuffer.wrap(frame)));
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) System.err.println("Connection to server lost: " + e.getMessage());
+        }
+    }
+
+    private void apply(ByteBuffer frame) {
+        byte type = frame.get();
+        if (type == NetProtocol.START) {
+            applyStart(frame);
+        } else if (type == NetProtocol.DELTA && grid != null) {
+            applyDelta(frame);
+        } else {
+            return;
+        }
+        onUpdate.run();
+    }
+
+    private void applyStart(ByteBuffer frame) {
+        int newCols = NetProtocol.getInt(frame);
+        int newRows = NetProtocol.getInt(frame);
+        if (grid == null || newCols != cols || newRows != rows) {
+            cols = newCols;
+            rows = newRows;
+            grid = Occupancy.forBoard(cols, rows);
+        }
+        grid.clear();
+        direction = Direction.values()[NetProtocol.getInt(frame)];
+        int count = NetProtocol.getInt(frame);
+        int[] cells = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = NetProtocol.getInt(frame);
+        }
+        length = 0;
+        head = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            grid.occupy(cells[i]);
+            pushHead(cells[i]);
+        }
+        removedTail = GameEngine.NONE;
+        food = NetProtocol.getInt(frame) - 1;
+        powerUp = NetProtocol.getInt(frame) - 1;
+        foodEaten = NetProtocol.getInt(frame);
+        status = NetProtocol.getInt(frame);
+    }
+
+    // Mirrors GameEngine.move: the tail leaves before the head arrives.
+    private void applyDelta(ByteBuffer frame) {
+        int flags = frame.get() & 0xff;
+        direction = Direction.values()[flags & NetProtocol.DIRECTION_MASK];
+        removedTail = GameEngine.NONE;
+        if ((flags & NetProtocol.TAIL_REMOVED) != 0 && length > 0) {
+            removedTail = getBodyCell(length - 1);
+            grid.release(removedTail);
+            length--;
+        }
+        int headCell = body[head];
+        int x = Math.max(0, Math.min(x(headCell) + direction.dx, cols - 1));
+        int y = Math.max(0, Math.min(y(headCell) + direction.dy, rows - 1));
+        int newHead = y * cols + x;
+        grid.occupy(newHead);
+        pushHead(newHead);
+
+        int oldPowerUp = powerUp;
+        if ((flags & NetProtocol.FOOD) != 0) food = NetProtocol.getInt(frame) - 1;
+        if ((flags & NetProtocol.POWER_UP) != 0) powerUp = NetProtocol.getInt(frame) - 1;
+        if ((flags & NetProtocol.SCORE) != 0) {
+            foodEaten = NetProtocol.getInt(frame);
+            listener.onFoodEaten();
+        }
+        if ((flags & NetProtocol.ACK) != 0) NetProtocol.getVarint(frame);
+        if (oldPowerUp != GameEngine.NONE && oldPowerUp == newHead && powerUp == GameEngine.NONE) {
+            listener.onPowerUpCollected();
+        }
+        if ((flags & NetProtocol.STATUS) != 0) {
+            boolean wasRunning = isRunning();
+            status = NetProtocol.getInt(frame);
+            if (wasRunning && !isRunning()) listener.onGameOver(foodEaten);
+        }
+    }
+
+    private void pushHead(int c) {
+        if (length == body.length) {
+            int[] grown = new int[body.length * 2];
+            for (int i = 0; i < length; i++) {
+                grown[i] = getBodyCell(i);
+            }
+            body = grown;
+            head = 0;
+        }
+        head = (head - 1) & (body.length - 1);
+        body[head] = c;
+        length++;
+    }
+
+    private int getBodyCell(int i) {
+        return body[(head + i) & (body.length - 1)];
+    }
+
+    @Override public int getCols() { return cols; }
+    @Override public int getRows() { return rows; }
+    @Override public int getHead() { return length == 0 ? GameEngine.NONE : body[head]; }
+    @Override public int getFood() { return food; }
+    @Override public int getPowerUp() { return powerUp; }
+    @Override public int getFoodEaten() { return foodEaten; }
+    @Override public boolean isRunning() { return (status & NetProtocol.RUNNING) != 0; }
+    @Override public boolean isSpeedBoostActive() { return (status & NetProtocol.SPEED_BOOST) != 0; }
+    @Override public boolean isOccupied(int cell) { return grid != null && grid.isOccupied(cell); }
+    @Override public int getDirtyCellCount() { return removedTail == GameEngine.NONE ? 0 : 1; }
+    @Override public int getDirtyCell(int i) { return removedTail; }
+}
@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Plays back a file written by ReplayRecorder by re-simulating the game headlessly.
+// The file is memory-mapped and events are decoded straight from the mapping as the
+// engine reaches them; seeking backwards restarts from the seed, or from a checkpoint
+// taken earlier (see ReplayExport).
+//
+// Usage: java -cp out Replay file.snkr [--seek tick]
+public class Replay {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final MappedByteBuffer data;
+    private final GameEngine engine;
+    private final long seed;
+    private final Direction startDirection;
+    private final int[] startCells;
+    private final int eventsStart;
+    private long totalTicks = -1; // -1 if the recording has no end marker
+    private int finalScore = -1;
+
+    private int position;
+    private long lastEventTick;
+    private long nextEventTick;
+    private Direction nextEventDirection;
+
+    // A point in the replay: the engine state plus where the event stream was read to.
+    // Immutable, so one checkpoint can be restored by several Replays of the same file.
+    public static final class Checkpoint {
+        final GameState state;
+        final int position;
+        final long lastEventTick;
+        final long nextEventTick;
+        final Direction nextEventDirection;
+
+        Checkpoint(GameState state, int position, long lastEventTick, long nextEventTick,
+                   Direction nextEventDirection) {
+            this.state = state;
+            this.position = position;
+            this.lastEventTick = lastEventTick;
+            this.nextEventTick = nextEventTick;
+            this.nextEventDirection = nextEventDirection;
+        }
+
+        public long getTick() {
+            return state.getTickCount();
+        }
+    }
+
+    public Replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        for (byte b : ReplayRecorder.MAGIC) {
+            if (data.get() != b) throw new IOException("Not a replay file: " + file);
+        }
+        int version = readInt();
+        if (version != ReplayRecorder.VERSION) throw new IOException("Unsupported replay version " + version);
+        int cols = readInt();
+        int rows = readInt();
+        int delay = readInt();
+        GameConfig config = new GameConfig(readInt(), readInt(), readInt(), readInt(),
+                readInt(), readInt(), readInt(), readInt());
+        seed = data.getLong();
+        startDirection = DIRECTIONS[readInt()];
+        startCells = new int[readInt()];
+        for (int i = 0; i < startCells.length; i++) {
+            startCells[i] = readInt();
+        }
+        eventsStart = position = data.position();
+        engine = new GameEngine(cols, rows, delay, config);
+        scanEnd();
+        restart();
+    }
+
+    // Walks the event stream once to find the end marker.
+    private void scanEnd() {
+        while (data.hasRemaining()) {
+            long event = readVarint();
+            if (event == 0) {
+                totalTicks = readVarint();
+                finalScore = readInt();
+                return;
+            }
+        }
+    }
+
+    public void restart() {
+        engine.reset(seed, startCells, startCells.length, startDirection);
+        position = eventsStart;
+        lastEventTick = 0;
+        readEvent();
+    }
+
+    private void readEvent() {
+        data.position(position);
+        long event = data.hasRemaining() ? readVarint() : 0;
+        if (event == 0) {
+            nextEventTick = Long.MAX_VALUE;
+        } else {
+            nextEventTick = lastEventTick + (event >>> 2);
+            lastEventTick = nextEventTick;
+            nextEventDirection = DIRECTIONS[(int) (event & 3)];
+        }
+        position = data.position();
+    }
+
+    // Advances one tick; false once the game has ended.
+    public boolean step() {
+        if (!engine.isRunning()) return false;
+        if (nextEventTick == engine.getTickCount() + 1) {
+            engine.setPendingDirection(nextEventDirection);
+            readEvent();
+        }
+        engine.tick();
+        return true;
+    }
+
+    public Checkpoint checkpoint() {
+        return new Checkpoint(engine.capture(), position, lastEventTick, nextEventTick, nextEventDirection);
+    }
+
+    public void restore(Checkpoint checkpoint) {
+        engine.restore(checkpoint.state);
+        position = checkpoint.position;
+        lastEventTick = checkpoint.lastEventTick;
+        nextEventTick = checkpoint.nextEventTick;
+        nextEventDirection = checkpoint.nextEventDirection;
+    }
+
+    public void seek(long tick) {
+        if (tick < engine.getTickCount()) {
+            restart();
+        }
+        while (engine.getTickCount() < tick && step()) {
+        }
+    }
+
+    // Plays to the end; returns the number of ticks simulated.
+    public long runToEnd() {
+        long start = engine.getTickCount();
+        while (step()) {
+        }
+        return engine.getTickCount() - start;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    public int getFinalScore() {
+        return finalScore;
+    }
+
+    private int readInt() {
+        return (int) readVarint();
+    }
+
+    private long readVarint() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+            shift += 7;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java -cp out Replay file.snkr [--seek tick]");
+            return;
+        }
+        Replay replay = new Replay(Paths.get(args[0]));
+        GameEngine engine = replay.getEngine();
+        System.out.println("Replay " + args[0] + ": " + engine.getCols() + "x" + engine.getRows()
+                + ", seed " + Long.toHexString(engine.getSeed()) + ", " + replay.getTotalTicks()
+                + " ticks, score " + replay.getFinalScore());
+
+        long start = System.nanoTime();
+        long ticks = replay.runToEnd();
+        long elapsed = System.nanoTime() - start;
+        boolean matches = engine.getTickCount() == replay.getTotalTicks() && engine.getFoodEaten() == replay.getFinalScore();
+        System.out.printf("Re-simulated %d ticks in %.2f ms (%.0f ticks/s), score %d: %s%n", ticks, elapsed / 1e6,
+                ticks / (elapsed / 1e9), engine.getFoodEaten(), matches ? "matches the recording" : "DIVERGED");
+
+        for (int i = 1; i + 1 < args.length; i++) {
+            if (args[i].equals("--seek")) {
+                long tick = Long.parseLong(args[++i]);
+                start = System.nanoTime();
+                replay.seek(tick);
+                System.out.printf("Seek to tick %d in %.2f ms: head (%d,%d), score %d, length %d%n",
+                        engine.getTickCount(), (System.nanoTime() - start) / 1e6, engine.x(engine.getHead()),
+                        engine.y(engine.getHead()), engine.getFoodEaten(), engine.getBodyLength());
+            }
+        }
+        if (!matches) {
+            System.exit(1);
+        }
+    }
+}
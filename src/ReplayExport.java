@@ -0,0 +1,232 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Renders a recorded game to numbered PNG frames, one per exported tick, with the same
+// GameRenderer calls GamePanel.draw() makes. Runs headless.
+//
+// A first pass re-simulates the game once and keeps a Replay.Checkpoint every
+// CHECKPOINT_TICKS. The frames are then cut into chunks that render threads take from a
+// pool; each restores the checkpoint at or before its chunk, steps to it and draws its
+// frames into offscreen images. Encoding is pipelined: a finished image goes to the
+// encoder threads and the renderer goes on with another image from a small recycled set,
+// so drawing and PNG compression overlap and memory stays bounded.
+//
+// Usage: java -Djava.awt.headless=true -cp out ReplayExport file.snkr [--out frames]
+//            [--from tick] [--to tick] [--every ticks] [--threads n]
+public class ReplayExport {
+    private static final int CHECKPOINT_TICKS = 500;
+    private static final int IMAGES_PER_THREAD = 2;
+    // PNG writer quality: 0.9 is a fast deflate level, about twice as fast as the default
+    // for frames roughly 1.5 times the size
+    private static final float PNG_QUALITY = 0.9f;
+
+    private final Path file;
+    private final Path outDir;
+    private final int threads;
+    private final int width = GamePanel.SCREEN_WIDTH;
+    private final int height = GamePanel.SCREEN_HEIGHT;
+    private final List<Replay.Checkpoint> checkpoints = new ArrayList<>();
+    private final BlockingQueue<BufferedImage> images;
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger written = new AtomicInteger();
+    private final ThreadLocal<ImageWriter> writers = ThreadLocal.withInitial(
+            () -> ImageIO.getImageWritersByFormatName("png").next());
+
+    public ReplayExport(Path file, Path outDir, int threads) {
+        this.file = file;
+        this.outDir = outDir;
+        this.threads = threads;
+        this.images = new ArrayBlockingQueue<>(threads * IMAGES_PER_THREAD * 2);
+        for (int i = 0; i < threads * IMAGES_PER_THREAD * 2; i++) {
+            images.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+    }
+
+    // Re-simulates the whole game once, keeping a checkpoint every CHECKPOINT_TICKS;
+    // returns the last tick.
+    private long scan() throws IOException {
+        Replay replay = new Replay(file);
+        GameEngine engine = replay.getEngine();
+        checkpoints.add(replay.checkpoint());
+        while (replay.step()) {
+            if (engine.getTickCount() % CHECKPOINT_TICKS == 0) {
+                checkpoints.add(replay.checkpoint());
+            }
+        }
+        return engine.getTickCount();
+    }
+
+    private Replay.Checkpoint checkpointFor(long tick) {
+        int i = (int) Math.min(tick / CHECKPOINT_TICKS, checkpoints.size() - 1);
+        return checkpoints.get(i);
+    }
+
+    // Writes frames for ticks from, from + every, ... up to 'to'; returns the frame count.
+    public int export(long from, long to, int every) throws IOException, InterruptedException {
+        long lastTick = scan();
+        to = Math.min(to, lastTick);
+        if (from > to) return 0;
+        Files.createDirectories(outDir);
+        int frames = (int) ((to - from) / every + 1);
+        int chunk = Math.max(1, Math.min(250, frames / (threads * 4)));
+        ExecutorService renderPool = Executors.newFixedThreadPool(threads, named("export-render"));
+        ExecutorService encoders = Executors.newFixedThreadPool(threads, named("export-encode"));
+        ThreadLocal<Replay> replays = ThreadLocal.withInitial(() -> {
+            try {
+                return new Replay(file);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        List<Future<?>> tasks = new ArrayList<>();
+        ThreadLocal<GameRenderer> renderers = ThreadLocal.withInitial(
+                () -> new GameRenderer(width, height, GamePanel.UNIT_SIZE));
+        List<Future<?>> encodes = Collections.synchronizedList(new ArrayList<>());
+        for (int first = 0; first < frames; first += chunk) {
+            int start = first;
+            int end = Math.min(frames, first + chunk);
+            tasks.add(renderPool.submit(() -> {
+                renderChunk(replays.get(), renderers.get(), start, end, from, every, encoders, encodes);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) task.get();
+            renderPool.shutdown();
+            synchronized (encodes) {
+                for (Future<?> encode : encodes) encode.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Export failed: " + e.getCause(), e.getCause());
+        } finally {
+            renderPool.shutdownNow();
+            encoders.shutdownNow();
+        }
+        return frames;
+    }
+
+    private void renderChunk(Replay replay, GameRenderer renderer, int start, int end, long from, int every,
+                             ExecutorService encoders, List<Future<?>> encodes) throws InterruptedException {
+        GameEngine engine = replay.getEngine();
+        renderer.invalidate(); // it last drew another chunk
+        Component target = new Canvas(); // receives the renderer's repaint calls, which are not needed here
+        long firstTick = from + (long) start * every;
+        replay.restore(checkpointFor(firstTick));
+        for (int frame = start; frame < end; frame++) {
+            long tick = from + (long) frame * every;
+            long before = engine.getTickCount();
+            while (engine.getTickCount() < tick && replay.step()) {
+            }
+            BufferedImage image = images.take();
+            long renderStart = System.nanoTime();
+            if (engine.getTickCount() - before != 1) renderer.invalidate(); // dirty cells only cover one tick
+            Graphics2D g = image.createGraphics();
+            if (engine.isRunning()) {
+                renderer.update(engine, target);
+                renderer.paint(g, engine);
+            } else {
+                g.setColor(GameRenderer.BACKGROUND); // GamePanel's background behind the game-over text
+                g.fillRect(0, 0, width, height);
+                renderer.paintGameOver(g, engine.getFoodEaten());
+            }
+            g.dispose();
+            renderNanos.addAndGet(System.nanoTime() - renderStart);
+            int number = frame;
+            encodes.add(encoders.submit(() -> {
+                encode(image, number);
+                return null;
+            }));
+        }
+    }
+
+    private void encode(BufferedImage image, int frame) throws IOException {
+        long start = System.nanoTime();
+        File out = outDir.resolve(String.format("frame-%06d.png", frame)).toFile();
+        ImageWriter writer = writers.get();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(PNG_QUALITY);
+        out.delete(); // the stream would leave a longer old file's tail in place
+        try (ImageOutputStream stream = new FileImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.setOutput(null);
+            images.add(image);
+        }
+        bytes.addAndGet(out.length());
+        written.incrementAndGet();
+        encodeNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public String getStats() {
+        int frames = Math.max(1, written.get());
+        return String.format("%d frames, %.1f MB, render %.2f ms/frame, encode %.2f ms/frame (thread time)",
+                written.get(), bytes.get() / 1e6, renderNanos.get() / 1e6 / frames, encodeNanos.get() / 1e6 / frames);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: java -Djava.awt.headless=true -cp out ReplayExport file.snkr [--out frames]"
+                    + " [--from tick] [--to tick] [--every ticks] [--threads n]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        Path out = Paths.get("frames");
+        long from = 0;
+        long to = Long.MAX_VALUE;
+        int every = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": out = Paths.get(args[++i]); break;
+                case "--from": from = Long.parseLong(args[++i]); break;
+                case "--to": to = Long.parseLong(args[++i]); break;
+                case "--every": every = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--threads": threads = Math.max(1, Integer.parseInt(args[++i])); break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+        ReplayExport export = new ReplayExport(Paths.get(args[0]), out, threads);
+        long start = System.nanoTime();
+        int frames = export.export(from, to, every);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Exported %d frames to %s in %.2f s: %.1f frames/s with %d threads%n",
+                frames, out, seconds, frames / seconds, threads);
+        System.out.println("  " + export.getStats());
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Records a game as its seed and start state plus the ticks at which the direction
+// changed. Everything else follows from the deterministic engine, so a replay is a few
+// bytes per turn.
+//
+// Format (ints are unsigned LEB128 varints unless noted):
+//   "SNKR" version cols rows initialDelay config(8 ints) seed(8 bytes LE)
+//   direction bodyLength bodyCells... (head first)
+//   events: (tickDelta << 2 | direction) with tickDelta >= 1
+//   end:    0 totalTicks finalScore
+// Version 2 games time power-ups and effects separately (see TimingWheel), so version 1
+// replays no longer play back the same game and are refused.
+public class ReplayRecorder {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'R'};
+    static final int VERSION = 2;
+
+    private byte[] buffer = new byte[256];
+    private int size;
+    private long lastTick;
+    private boolean finished;
+
+    void begin(GameEngine engine) {
+        size = 0;
+        lastTick = 0;
+        finished = false;
+        for (byte b : MAGIC) writeByte(b);
+        writeVarint(VERSION);
+        writeVarint(engine.getCols());
+        writeVarint(engine.getRows());
+        writeVarint(engine.getInitialDelay());
+        GameConfig config = engine.getConfig();
+        writeVarint(config.easyDelay);
+        writeVarint(config.normalDelay);
+        writeVarint(config.hardDelay);
+        writeVarint(config.powerUpChancePercent);
+        writeVarint(config.effectDurationMillis);
+        writeVarint(config.speedUpEveryFood);
+        writeVarint(config.speedUpStepMillis);
+        writeVarint(config.minDelay);
+        long seed = engine.getSeed();
+        for (int i = 0; i < 8; i++) writeByte((int) (seed >>> (8 * i)));
+        writeVarint(engine.getDirection().ordinal());
+        writeVarint(engine.getBodyLength());
+        for (int i = 0; i < engine.getBodyLength(); i++) {
+            writeVarint(engine.getBodyCell(i));
+        }
+    }
+
+    // Called by the engine when the direction it applies on 'tick' changes.
+    void recordDirection(long tick, Direction direction) {
+        if (finished) return;
+        writeVarint((tick - lastTick) << 2 | direction.ordinal());
+        lastTick = tick;
+    }
+
+    void end(GameEngine engine) {
+        if (finished) return;
+        writeVarint(0);
+        writeVarint(engine.getTickCount());
+        writeVarint(engine.getFoodEaten());
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void save(String path) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            out.write(buffer, 0, size);
+        }
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int b) {
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, size * 2);
+        }
+        buffer[size++] = (byte) b;
+    }
+}
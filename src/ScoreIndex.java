@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+// Order statistics over recorded scores: a Fenwick tree of counts indexed by score value.
+// Adding a score, ranking one and finding the k-th best are all O(log maxScore), and the
+// memory depends on the highest score rather than on how many games were recorded.
+public class ScoreIndex {
+    private long[] tree = new long[1024 + 1]; // 1-based; node i covers scores [i - lowbit(i), i)
+    private int capacity = 1024; // power of two: scores 0..capacity-1
+    private long total;
+
+    public void add(int score) {
+        score = Math.max(0, score);
+        if (score >= capacity) grow(score);
+        for (int i = score + 1; i <= capacity; i += i & -i) {
+            tree[i]++;
+        }
+        total++;
+    }
+
+    // Doubling keeps every existing node valid: the new nodes below the top cover only
+    // scores that were out of range, and the new top node covers everything.
+    private void grow(int score) {
+        while (score >= capacity) {
+            int newCapacity = capacity * 2;
+            tree = Arrays.copyOf(tree, newCapacity + 1);
+            tree[newCapacity] = total;
+            capacity = newCapacity;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(tree, 0);
+        total = 0;
+    }
+
+    public long size() {
+        return total;
+    }
+
+    // Number of recorded scores <= score.
+    public long countAtMost(int score) {
+        if (score < 0) return 0;
+        long count = 0;
+        for (int i = Math.min(score + 1, capacity); i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    public long countAbove(int score) {
+        return total - countAtMost(score);
+    }
+
+    // 1-based standing of a score: one more than the number of strictly better scores.
+    public long rank(int score) {
+        return countAbove(score) + 1;
+    }
+
+    // Percentage of recorded scores that this score equals or beats.
+    public double percentile(int score) {
+        return total == 0 ? 100 : 100.0 * countAtMost(score) / total;
+    }
+
+    // k-th lowest score, 1-based, found by descending the tree; -1 if k is out of range.
+    public int kthLowest(long k) {
+        if (k < 1 || k > total) return -1;
+        int position = 0;
+        for (int step = capacity; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= capacity && tree[next] < k) {
+                position = next;
+                k -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    public int kthBest(long k) {
+        return kthLowest(total - k + 1);
+    }
+
+    public int best() {
+        return total == 0 ? 0 : kthBest(1);
+    }
+
+    // Score at the given percentile (0-100) of the recorded scores.
+    public int valueAtPercentile(double percent) {
+        return total == 0 ? 0 : kthLowest(Math.max(1, (long) Math.ceil(total * percent / 100.0)));
+    }
+
+    // Fills out with the best scores, highest first; returns how many were written.
+    public int top(int[] out) {
+        int count = (int) Math.min(out.length, total);
+        for (int k = 0; k < count; k++) {
+            out[k] = kthBest(k + 1);
+        }
+        return count;
+    }
+}
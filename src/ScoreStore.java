@@ -0,0 +1,413 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+// Every score ever played, kept in an append-only log of fixed-size checksummed records.
+// push() updates the in-memory Leaderboard and queues the record; a background thread
+// writes queued records in batches, so the game never waits on the disk. On open, a
+// torn or corrupt tail (from a crash mid-write) is truncated away. Resetting the high
+// scores appends a reset marker, and once the records before the last marker outweigh
+// the live ones the log is compacted into a fresh file that replaces it atomically.
+//
+// File: "SNKS" version(int), then records of
+//   type(short) delay(short) score(int) time(long, epoch ms) crc32(int) over the first 16 bytes
+public class ScoreStore implements Runnable {
+    public static final String DEFAULT_FILE = "scores.log";
+    // -Dsnake.scores=FILE keeps the shared store somewhere else, e.g. for the soak test
+    private static final String FILE = System.getProperty("snake.scores", DEFAULT_FILE);
+    private static final String[] LEGACY_FILES = {"highscores.txt", "highscore.txt"};
+    private static final byte[] MAGIC = {'S', 'N', 'K', 'S'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 20;
+    private static final short SCORE = 0;
+    private static final short RESET = 1;
+    private static final int MAX_BATCH = 4096;
+    private static final int COMPACT_MIN_DEAD = 1024;
+
+    private static final Entry STOP = new Entry(RESET, 0, 0, 0); // tells the writer to finish
+
+    private static ScoreStore shared;
+
+    // A score as stored in the log.
+    public interface Visitor {
+        void accept(int score, int delay, long time);
+    }
+
+    private static final class Entry {
+        final short type;
+        final short delay;
+        final int score;
+        final long time;
+
+        Entry(short type, int delay, int score, long time) {
+            this.type = type;
+            this.delay = (short) Math.min(delay, Short.MAX_VALUE);
+            this.score = score;
+            this.time = time;
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel; // owned by the writer thread once it has started
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    // Writer-thread state
+    private long deadRecords; // records before the last reset marker
+    private long liveRecords;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(MAX_BATCH * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Entry> pending = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    // Progress and statistics
+    private long submitted; // guarded by this
+    private long written; // guarded by this
+    private volatile long batches;
+    private volatile long compactions;
+    private volatile long recoveredBytes;
+
+    public ScoreStore(String file) throws IOException {
+        path = Paths.get(file);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader(channel);
+        } else {
+            recover();
+        }
+        writer = new Thread(this, "score-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // The store behind the game's high scores; imports the old text files on first use.
+    public static synchronized ScoreStore shared() {
+        if (shared == null) {
+            try {
+                boolean fresh = !new File(FILE).exists();
+                shared = new ScoreStore(FILE);
+                if (fresh) {
+                    for (String legacy : LEGACY_FILES) {
+                        shared.importLegacy(legacy);
+                    }
+                }
+                ScoreStore store = shared;
+                Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open score store " + FILE, e);
+            }
+        }
+        return shared;
+    }
+
+    // Never blocks on I/O; the record reaches the disk with the writer's next batch.
+    public void push(int score, int delay) {
+        enqueue(new Entry(SCORE, delay, score, System.currentTimeMillis()));
+        leaderboard.add(score, delay);
+    }
+
+    public void resetHighScores() {
+        enqueue(new Entry(RESET, 0, 0, System.currentTimeMillis()));
+        leaderboard.clear();
+    }
+
+    private void enqueue(Entry entry) {
+        if (closed) {
+            System.err.println("Score store is closed, dropping score " + entry.score);
+            return;
+        }
+        synchronized (this) {
+            submitted++;
+        }
+        queue.add(entry);
+    }
+
+    // Scores recorded since the last reset, indexed by speed tier.
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public String getTopThree() {
+        return leaderboard.getHudText(Leaderboard.ALL_TIERS);
+    }
+
+    public int getBest() {
+        return leaderboard.best(Leaderboard.ALL_TIERS);
+    }
+
+    public long getCount() {
+        return leaderboard.size(Leaderboard.ALL_TIERS);
+    }
+
+    // Waits until everything pushed so far is on disk.
+    public synchronized void flush() {
+        long target = submitted;
+        while (written < target && writer.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Visits every live score on disk, oldest first, after flushing pending writes.
+    public void forEach(Visitor visitor) throws IOException {
+        flush();
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(reader, (type, delay, score, time) -> {
+                if (type == RESET) return false;
+                visitor.accept(score, delay, time);
+                return true;
+            }, true);
+        }
+    }
+
+    public void close() {
+        if (closed) return;
+        flush();
+        closed = true;
+        queue.add(STOP);
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getStats() {
+        synchronized (this) {
+            return String.format("scores=%d written=%d batches=%d compactions=%d recoveredBytes=%d",
+                    getCount(), written, batches, compactions, recoveredBytes);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    pending.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(pending, MAX_BATCH - 1);
+                stopping = pending.remove(STOP);
+                if (!pending.isEmpty()) {
+                    writeBatch();
+                }
+                if (deadRecords >= COMPACT_MIN_DEAD && deadRecords > liveRecords) {
+                    compact();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing scores to " + path + ": " + e.getMessage());
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing score store: " + e.getMessage());
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        Telemetry.ScorePersistEvent event = Telemetry.enabled ? new Telemetry.ScorePersistEvent() : null;
+        if (event != null) event.begin();
+        batch.clear();
+        for (Entry entry : pending) {
+            encode(entry);
+            if (entry.type == RESET) {
+                deadRecords += liveRecords + 1;
+                liveRecords = 0;
+            } else {
+                liveRecords++;
+            }
+        }
+        batch.flip();
+        channel.position(channel.size());
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        batches++;
+        if (event != null) {
+            event.records = pending.size();
+            event.bytes = batch.limit();
+            event.commit();
+        }
+        synchronized (this) {
+            written += pending.size();
+            notifyAll();
+        }
+        pending.clear();
+    }
+
+    private void encode(Entry entry) {
+        int start = batch.position();
+        batch.putShort(entry.type).putShort(entry.delay).putInt(entry.score).putLong(entry.time);
+        batch.putInt(checksum(crc, batch, start));
+    }
+
+    private static int checksum(CRC32 crc, ByteBuffer buffer, int start) {
+        crc.reset();
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start).limit(start + RECORD_SIZE - 4);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    // Rewrites the records after the last reset marker into a new file and swaps it in.
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        long liveStart = channel.size() - liveRecords * RECORD_SIZE;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            long position = liveStart;
+            while (position < channel.size()) {
+                position += channel.transferTo(position, channel.size() - position, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        deadRecords = 0;
+        compactions++;
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).flip();
+        out.truncate(0);
+        while (header.hasRemaining()) {
+            out.write(header, 0);
+        }
+        out.force(true);
+    }
+
+    // Loads the top scores and truncates anything after the last intact record.
+    private void recover() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+        for (byte b : MAGIC) {
+            if (header.get() != b) throw new IOException(path + " is not a score log");
+        }
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported score log version " + version);
+
+        long valid = scan(channel, (type, delay, score, time) -> {
+            if (type == RESET) {
+                deadRecords += liveRecords + 1;
+                liveRecords = 0;
+                leaderboard.clear();
+            } else {
+                liveRecords++;
+                leaderboard.add(score, delay);
+            }
+            return true;
+        }, false);
+        if (valid < channel.size()) {
+            recoveredBytes = channel.size() - valid;
+            System.err.println("Score log " + path + ": dropped " + recoveredBytes + " bytes of torn or corrupt records");
+            channel.truncate(valid);
+            channel.force(true);
+        }
+    }
+
+    private interface RecordVisitor {
+        boolean accept(short type, short delay, int score, long time); // false skips the rest of a live scan
+    }
+
+    // Reads records until the first one that fails its checksum; returns the end of the last
+    // good record. With liveOnly, only the records after the last reset marker are visited.
+    private long scan(FileChannel in, RecordVisitor visitor, boolean liveOnly) throws IOException {
+        long start = HEADER_SIZE;
+        if (liveOnly) {
+            start = findLiveStart(in);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32(); // scans also run on caller threads, so not the writer's
+        long position = start;
+        while (true) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read < RECORD_SIZE) return position;
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int offset = buffer.position();
+                short type = buffer.getShort();
+                short delay = buffer.getShort();
+                int score = buffer.getInt();
+                long time = buffer.getLong();
+                int stored = buffer.getInt();
+                if (stored != checksum(crc, buffer, offset) || (type != SCORE && type != RESET)) {
+                    return position;
+                }
+                position += RECORD_SIZE;
+                if (!visitor.accept(type, delay, score, time) && liveOnly) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    // Offset just past the last reset marker (or the header if there is none).
+    private long findLiveStart(FileChannel in) throws IOException {
+        long[] liveStart = {HEADER_SIZE};
+        long[] offset = {HEADER_SIZE};
+        scan(in, (type, delay, score, time) -> {
+            offset[0] += RECORD_SIZE;
+            if (type == RESET) liveStart[0] = offset[0];
+            return true;
+        }, false);
+        return liveStart[0];
+    }
+
+    // Imports a score-per-line text file from the old high score implementation. Those
+    // files do not say at what speed a score was set, so each one goes to the normal
+    // speed tier, where the HUD shows it, as well as to the all-tier scores.
+    private void importLegacy(String file) {
+        if (!new File(file).exists()) return;
+        int imported = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    push(Integer.parseInt(line.trim()), GameConfig.DEFAULT.normalDelay);
+                    imported++;
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing high scores from " + file + ": " + e.getMessage());
+        }
+        if (imported > 0) {
+            System.out.println("Imported " + imported + " scores from " + file);
+        }
+    }
+}
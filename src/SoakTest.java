@@ -0,0 +1,250 @@
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Mixer;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+// Plays thousands of games back to back through the real Swing path, to find what creeps
+// up over a long session. Each game runs in a GamePanel made by Main.onSpeedSelected, is
+// played by a bot at a 1 ms tick and ends with a click on the game-over Restart button,
+// which takes Main back to a new speed menu, exactly as a player would go round.
+//
+// Every N games it samples heap used after a full GC, the live thread count, the audio
+// lines open on all mixers and the number of components in the window (or host panel
+// when headless). At the end the samples after a warm-up quarter get a least-squares
+// trend; a metric whose fitted growth over the run passes its limit is reported as a
+// leak and the exit code is 1.
+//
+// Scores go to a temp file and autosave is off, so a soak leaves the player's files
+// alone. Headless, the game plays in an offscreen container that is painted at every
+// game over.
+//
+// Usage: java -cp out SoakTest [--games 2000] [--every 50] [--delay 1] [--out soak.csv]
+// with -Dsnake.autopilot=true to soak with the (much slower to die) autopilot.
+public class SoakTest {
+    private static final double WARM_UP = 0.25;
+    private static final long HEAP_LIMIT_BYTES = 4 << 20; // or 10% of the first sample, if more
+    private static final double THREAD_LIMIT = 2;         // a helper or two started once is no trend
+    private static final double COUNT_LIMIT = 0.5;        // lines and components must not grow at all
+
+    private static final class Sample {
+        final int games;
+        final double seconds;
+        final long heap;
+        final int threads;
+        final int lines;
+        final int components;
+
+        Sample(int games, double seconds, long heap, int threads, int lines, int components) {
+            this.games = games;
+            this.seconds = seconds;
+            this.heap = heap;
+            this.threads = threads;
+            this.lines = lines;
+            this.components = components;
+        }
+    }
+
+    private final int targetGames;
+    private final int every;
+    private final int delay;
+    private final boolean headless = GraphicsEnvironment.isHeadless();
+    private final List<Sample> samples = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+    private BufferedImage offscreen;
+    private Main main;
+    private Timer poller;
+    private int games;
+
+    public SoakTest(int targetGames, int every, int delay) {
+        this.targetGames = targetGames;
+        this.every = every;
+        this.delay = delay;
+    }
+
+    // EDT
+    private void start() {
+        if (headless) {
+            JPanel host = new JPanel(new BorderLayout());
+            host.setSize(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT);
+            offscreen = new BufferedImage(GamePanel.SCREEN_WIDTH, GamePanel.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            main = new Main(host);
+            main.showSpeedSelectionScreen();
+        } else {
+            main = new Main();
+            main.createAndShowGUI();
+        }
+        main.onSpeedSelected(delay);
+        poller = new Timer(1, e -> poll());
+        poller.start();
+    }
+
+    // EDT: after each game, press Restart and pick the speed on the menu it brings back.
+    private void poll() {
+        GamePanel panel = main.getGamePanel();
+        if (panel == null || !panel.isGameOver()) return;
+        games++;
+        if (headless) paintOffscreen();
+        panel.clickRestart();
+        if (games % every == 0) {
+            sample();
+        }
+        if (games >= targetGames) {
+            poller.stop();
+            finished.countDown();
+            return;
+        }
+        main.onSpeedSelected(delay);
+    }
+
+    private void paintOffscreen() {
+        Container host = main.getHost();
+        host.validate();
+        Graphics2D g = offscreen.createGraphics();
+        host.paint(g);
+        g.dispose();
+    }
+
+    private void sample() {
+        System.gc();
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        Sample sample = new Sample(games, (System.nanoTime() - startNanos) / 1e9, heap, threads,
+                openLines(), componentCount());
+        samples.add(sample);
+        System.out.printf(Locale.ROOT, "%6d games %7.1f s  heap %7.2f MB  threads %3d  lines %2d  components %4d%n",
+                sample.games, sample.seconds, sample.heap / 1e6, sample.threads, sample.lines, sample.components);
+    }
+
+    private static int openLines() {
+        int lines = 0;
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            try {
+                Mixer mixer = AudioSystem.getMixer(info);
+                lines += mixer.getSourceLines().length + mixer.getTargetLines().length;
+            } catch (RuntimeException e) {
+                // a mixer that cannot be opened has no lines of ours
+            }
+        }
+        return lines;
+    }
+
+    private int componentCount() {
+        Component root = SwingUtilities.getRoot(main.getHost());
+        return count(root != null ? root : main.getHost()) + Window.getWindows().length;
+    }
+
+    private static int count(Component component) {
+        int n = 1;
+        if (component instanceof Container) {
+            for (Component child : ((Container) component).getComponents()) {
+                n += count(child);
+            }
+        }
+        return n;
+    }
+
+    // Prints the trend of each metric; returns true if none grows past its limit.
+    private boolean report() {
+        int from = Math.min((int) (samples.size() * WARM_UP), Math.max(0, samples.size() - 3));
+        List<Sample> run = samples.subList(from, samples.size());
+        if (run.size() < 3) {
+            System.out.println("Too few samples for a trend: " + samples.size() + "; play more games or sample more often");
+            return true;
+        }
+        double[] heap = new double[run.size()];
+        double[] threads = new double[run.size()];
+        double[] lines = new double[run.size()];
+        double[] components = new double[run.size()];
+        for (int i = 0; i < run.size(); i++) {
+            Sample s = run.get(i);
+            heap[i] = s.heap / 1e6;
+            threads[i] = s.threads;
+            lines[i] = s.lines;
+            components[i] = s.components;
+        }
+        System.out.printf("Trend over games %d to %d:%n", run.get(0).games, run.get(run.size() - 1).games);
+        boolean ok = check("heap MB", heap, Math.max(HEAP_LIMIT_BYTES / 1e6, heap[0] * 0.1));
+        ok &= check("threads", threads, THREAD_LIMIT);
+        ok &= check("open lines", lines, COUNT_LIMIT);
+        ok &= check("components", components, COUNT_LIMIT);
+        return ok;
+    }
+
+    private static boolean check(String name, double[] values, double limit) {
+        int n = values.length;
+        double meanX = (n - 1) / 2.0;
+        double meanY = 0;
+        for (double v : values) meanY += v;
+        meanY /= n;
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < n; i++) {
+            covariance += (i - meanX) * (values[i] - meanY);
+            variance += (i - meanX) * (i - meanX);
+        }
+        double growth = covariance / variance * (n - 1);
+        boolean leak = growth > limit && values[n - 1] > values[0];
+        System.out.printf(Locale.ROOT, "  %-11s %9.2f -> %9.2f  fitted growth %+9.2f (limit %.2f)  %s%n",
+                name, values[0], values[n - 1], growth, limit, leak ? "LEAK" : "ok");
+        return !leak;
+    }
+
+    private void writeCsv(String path) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("games,seconds,heapBytes,threads,lines,components");
+            for (Sample s : samples) {
+                out.printf(Locale.ROOT, "%d,%.3f,%d,%d,%d,%d%n", s.games, s.seconds, s.heap, s.threads, s.lines,
+                        s.components);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = 2000;
+        int every = 50;
+        int delay = 1;
+        String out = "soak.csv";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--every": every = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--delay": delay = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--out": out = args[++i]; break;
+                default: System.err.println("Unknown option: " + args[i]);
+            }
+        }
+        // Read once by GamePanel and ScoreStore, so set before either class loads
+        if (System.getProperty("snake.autopilot") == null) System.setProperty("snake.autopilot", "greedy");
+        System.setProperty("snake.autosave", "0");
+        if (System.getProperty("snake.scores") == null) {
+            File scores = File.createTempFile("soak-scores", ".log");
+            scores.deleteOnExit();
+            System.setProperty("snake.scores", scores.getPath());
+        }
+        AssetManager.shared().preload();
+        SoakTest soak = new SoakTest(games, every, delay);
+        System.out.println("Soaking " + games + " games at " + delay + " ms per tick"
+                + (soak.headless ? ", headless" : "") + ", sampling every " + every);
+        SwingUtilities.invokeLater(soak::start);
+        soak.finished.await();
+        soak.writeCsv(out);
+        boolean ok = soak.report();
+        System.out.printf(Locale.ROOT, "%d games in %.1f s; samples in %s: %s%n", soak.games,
+                (System.nanoTime() - soak.startNanos) / 1e9, out, ok ? "no leaks found" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+}
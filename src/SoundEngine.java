@@ -0,0 +1,295 @@
+import javax.sound.sampled.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Software mixer: sounds are decoded into memory once, and a single mixer thread sums
+// the active voices into one SourceDataLine. play() only enqueues a command into a
+// bounded lock-free queue, so it never blocks the caller.
+public class SoundEngine implements Runnable {
+    public static final int NO_SOUND = -1;
+    private static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+    private static final int CHANNELS = 2;
+    private static final int BLOCK_FRAMES = 256; // ~5.8 ms per mix block
+    private static final int LINE_BUFFER_FRAMES = BLOCK_FRAMES * 4;
+    private static final int MAX_VOICES = 16;
+    private static final int QUEUE_SIZE = 64; // power of two
+
+    private static final int PLAY = 0;
+    private static final int LOOP = 1;
+    private static final int STOP = 2;
+
+    private static SoundEngine shared;
+
+    private volatile short[][] sounds = new short[0][];
+    private String[] names = new String[0];
+    private SourceDataLine line;
+    private volatile Thread thread;
+    private volatile boolean closed = false;
+
+    // Bounded multi-producer queue of commands (Vyukov style: per-slot sequence numbers)
+    private final AtomicLongArray sequences = new AtomicLongArray(QUEUE_SIZE);
+    private final int[] commandSound = new int[QUEUE_SIZE];
+    private final int[] commandType = new int[QUEUE_SIZE];
+    private final long[] commandTime = new long[QUEUE_SIZE];
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private long dequeuePosition;
+
+    // Voices, owned by the mixer thread
+    private final int[] voiceSound = new int[MAX_VOICES];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final boolean[] voiceLoop = new boolean[MAX_VOICES];
+    private final int[] mix = new int[BLOCK_FRAMES * CHANNELS];
+    private final byte[] out = new byte[BLOCK_FRAMES * CHANNELS * 2];
+
+    // Statistics, written by the mixer thread
+    private volatile int activeVoices;
+    private volatile int peakVoices;
+    private volatile long started;
+    private volatile long latencySum;
+    private volatile long latencyMax;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SoundEngine() {
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            sequences.set(i, i);
+        }
+        Arrays.fill(voiceSound, NO_SOUND);
+    }
+
+    public static synchronized SoundEngine shared() {
+        if (shared == null) {
+            shared = new SoundEngine();
+            for (String[] file : AssetManager.SOUND_FILES) {
+                shared.add(file[0], AssetManager.shared().sound(file[1]).join()); // decoded in parallel
+            }
+            shared.start();
+            if (shared.isAvailable()) {
+                SoundEngine engine = shared;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("Sound: " + engine.getStats())));
+            }
+        }
+        return shared;
+    }
+
+    // Decodes a WAV file into the mixer format; returns its id or NO_SOUND.
+    public int load(String name, String filePath) {
+        return add(name, decode(filePath));
+    }
+
+    // Adds decoded samples under a name; null (a sound that failed to load) gives NO_SOUND.
+    public synchronized int add(String name, short[] samples) {
+        if (samples == null) return NO_SOUND;
+        short[][] grown = Arrays.copyOf(sounds, sounds.length + 1);
+        String[] grownNames = Arrays.copyOf(names, names.length + 1);
+        grown[sounds.length] = samples;
+        grownNames[names.length] = name;
+        sounds = grown;
+        names = grownNames;
+        return sounds.length - 1;
+    }
+
+    // Reads a WAV file as interleaved samples in the mixer format, or null on error.
+    // Touches no engine state, so several files can be decoded at once.
+    public static short[] decode(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("Sound file not found: " + file.getAbsolutePath());
+            return null;
+        }
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file);
+             AudioInputStream pcm = AudioSystem.getAudioInputStream(FORMAT, source)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = pcm.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            byte[] data = bytes.toByteArray();
+            short[] samples = new short[data.length / 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((data[2 * i] & 0xff) | (data[2 * i + 1] << 8));
+            }
+            return samples;
+        } catch (Exception e) {
+            System.err.println("Error loading sound " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized int find(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return NO_SOUND;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BUFFER_FRAMES * FORMAT.getFrameSize());
+            line.start();
+        } catch (Exception e) {
+            System.err.println("Audio output unavailable, sound disabled: " + e.getMessage());
+            line = null;
+            return;
+        }
+        thread = new Thread(this, "sound-mixer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+        closed = true;
+        Thread mixer = thread;
+        if (mixer != null) {
+            try {
+                mixer.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (line != null) {
+            line.close();
+        }
+    }
+
+    public void play(String name) {
+        play(find(name));
+    }
+
+    public void play(int sound) {
+        enqueue(PLAY, sound);
+    }
+
+    public void loop(int sound) {
+        enqueue(LOOP, sound);
+    }
+
+    // Stops every voice playing the given sound.
+    public void stop(int sound) {
+        enqueue(STOP, sound);
+    }
+
+    private void enqueue(int type, int sound) {
+        if (sound == NO_SOUND || thread == null || closed) return;
+        long position = enqueuePosition.get();
+        while (true) {
+            int slot = (int) (position & (QUEUE_SIZE - 1));
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    commandSound[slot] = sound;
+                    commandType[slot] = type;
+                    commandTime[slot] = System.nanoTime();
+                    sequences.set(slot, position + 1); // publishes the slot to the mixer
+                    return;
+                }
+                position = enqueuePosition.get();
+            } else if (diff < 0) {
+                dropped.incrementAndGet(); // queue full: drop rather than wait
+                return;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            drainCommands();
+            mixBlock();
+            line.write(out, 0, out.length); // blocks until the line has room, pacing the mixer
+        }
+        line.drain();
+    }
+
+    private void drainCommands() {
+        while (true) {
+            int slot = (int) (dequeuePosition & (QUEUE_SIZE - 1));
+            if (sequences.get(slot) != dequeuePosition + 1) return;
+            int sound = commandSound[slot];
+            int type = commandType[slot];
+            long time = commandTime[slot];
+            sequences.set(slot, dequeuePosition + QUEUE_SIZE);
+            dequeuePosition++;
+            if (type == STOP) {
+                for (int v = 0; v < MAX_VOICES; v++) {
+                    if (voiceSound[v] == sound) voiceSound[v] = NO_SOUND;
+                }
+            } else {
+                startVoice(sound, type == LOOP, time);
+            }
+        }
+    }
+
+    private void startVoice(int sound, boolean loop, long enqueuedAt) {
+        int voice = -1;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSound[v] == NO_SOUND) {
+                voice = v;
+                break;
+            }
+        }
+        if (voice < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        voiceSound[voice] = sound;
+        voicePosition[voice] = 0;
+        voiceLoop[voice] = loop;
+        // Trigger latency: time queued plus the audio already buffered ahead in the line
+        long buffered = (long) (line.getBufferSize() - line.available()) / FORMAT.getFrameSize();
+        long latency = System.nanoTime() - enqueuedAt + buffered * 1_000_000_000L / (long) FORMAT.getSampleRate();
+        started++;
+        latencySum += latency;
+        latencyMax = Math.max(latencyMax, latency);
+        if (Telemetry.enabled) Telemetry.SOUND.record(latency);
+    }
+
+    private void mixBlock() {
+        Arrays.fill(mix, 0);
+        short[][] library = sounds;
+        int voices = 0;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            int sound = voiceSound[v];
+            if (sound == NO_SOUND) continue;
+            voices++;
+            short[] samples = library[sound];
+            int position = voicePosition[v];
+            for (int i = 0; i < mix.length; i++) {
+                if (position >= samples.length) {
+                    if (!voiceLoop[v] || samples.length == 0) {
+                        voiceSound[v] = NO_SOUND;
+                        break;
+                    }
+                    position = 0;
+                }
+                mix[i] += samples[position++];
+            }
+            voicePosition[v] = position;
+        }
+        activeVoices = voices;
+        if (voices > peakVoices) peakVoices = voices;
+        for (int i = 0; i < mix.length; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            out[2 * i] = (byte) sample;
+            out[2 * i + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    public boolean isAvailable() {
+        return thread != null;
+    }
+
+    public String getStats() {
+        long count = started;
+        double meanMs = count == 0 ? 0 : latencySum / 1e6 / count;
+        return String.format("voices=%d peak=%d played=%d latency mean=%.2fms max=%.2fms dropped=%d",
+                activeVoices, peakVoices, count, meanMs, latencyMax / 1e6, dropped.get());
+    }
+}
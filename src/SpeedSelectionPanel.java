@@ -3,6 +3,7 @@ import java.awt.*;
 import java.awt.event.*;
 
 public class SpeedSelectionPanel extends JPanel {
+    static final String FONT_NAME = "Ink Free";
     private SpeedSelectionListener listener;
     private JLabel welcomeLabel;
     private JLabel instructionLabel;
@@ -11,7 +12,6 @@ public class SpeedSelectionPanel extends JPanel {
     public SpeedSelectionPanel(SpeedSelectionListener listener) {
         this.listener = listener;
         initComponents();
-        startTitleAnimation();
     }
 
     private void initComponents() {
@@ -23,30 +23,30 @@ public class SpeedSelectionPanel extends JPanel {
         gbc.insets = new Insets(20, 0, 10, 0);
 
         welcomeLabel = new JLabel("WELCOME TO SNAKE GAME");
-        welcomeLabel.setFont(new Font("Ink Free", Font.BOLD, 40));
+        welcomeLabel.setFont(AssetManager.font(FONT_NAME, Font.BOLD, 40));
         welcomeLabel.setForeground(Color.CYAN);
         welcomeLabel.setHorizontalAlignment(JLabel.CENTER);
         add(welcomeLabel, gbc);
 
         gbc.insets = new Insets(10, 0, 30, 0);
         instructionLabel = new JLabel("Choose speed of the snake");
-        instructionLabel.setFont(new Font("Ink Free", Font.PLAIN, 30));
+        instructionLabel.setFont(AssetManager.font(FONT_NAME, Font.PLAIN, 30));
         instructionLabel.setForeground(Color.CYAN);
         instructionLabel.setHorizontalAlignment(JLabel.CENTER);
         add(instructionLabel, gbc);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         buttonPanel.setOpaque(false);
-        buttonPanel.add(createStyledButton("Easy", 150));
-        buttonPanel.add(createStyledButton("Normal", 100));
-        buttonPanel.add(createStyledButton("Hard", 65));
+        buttonPanel.add(createStyledButton("Easy", GameConfig.DEFAULT.easyDelay));
+        buttonPanel.add(createStyledButton("Normal", GameConfig.DEFAULT.normalDelay));
+        buttonPanel.add(createStyledButton("Hard", GameConfig.DEFAULT.hardDelay));
         gbc.insets = new Insets(20, 0, 20, 0);
         add(buttonPanel, gbc);
     }
 
     private JButton createStyledButton(String text, int delay) {
         JButton button = new JButton(text);
-        button.setFont(new Font("Ink Free", Font.BOLD, 20));
+        button.setFont(AssetManager.font(FONT_NAME, Font.BOLD, 20));
         button.setForeground(Color.WHITE);
         button.setBackground(new Color(0, 102, 204));
         button.setFocusPainted(false);
@@ -78,6 +78,20 @@ public class SpeedSelectionPanel extends JPanel {
         colorTimer.start();
     }
 
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        AssetManager.shared().markFirstFrame();
+    }
+
+    // The animation runs while the panel is on screen; a timer started before that would
+    // keep a panel that is never shown (or removed unseen) reachable for good.
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        startTitleAnimation();
+    }
+
     @Override
     public void removeNotify() {
         super.removeNotify();
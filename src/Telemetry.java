@@ -0,0 +1,197 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+
+// Opt-in instrumentation for the game: histograms of tick and paint time, input-to-move
+// and sound trigger latency, bytes allocated per tick, and JFR events around the engine's
+// move and collision check and the score writer's batches. Everything is behind the
+// 'enabled' flag, so with telemetry off the hot paths pay one field read.
+//
+// -Dsnake.telemetry=true starts with it on; F3 in the game toggles it and its HUD. While
+// on, a summary is appended to telemetry.txt every DUMP_SECONDS. JFR events are only
+// kept when a recording runs, e.g. java -XX:StartFlightRecording:filename=snake.jfr Main.
+//
+// Each histogram has a single writer thread (tick, EDT, tick, mixer); the HUD and the
+// dump read them without locking, so they may be off by a sample.
+public final class Telemetry {
+    static volatile boolean enabled;
+
+    static final String DUMP_FILE = "telemetry.txt";
+    private static final int DUMP_SECONDS = 10;
+    private static final long HUD_REFRESH_NANOS = 500_000_000L;
+
+    static final Histogram TICK = new Histogram();  // ns per tick handler
+    static final Histogram PAINT = new Histogram(); // ns per paintComponent
+    static final Histogram INPUT = new Histogram(); // ns from key press to the move that applies it
+    static final Histogram SOUND = new Histogram(); // ns from play() to audible, see SoundEngine
+    static final Histogram ALLOC = new Histogram(); // bytes allocated by the tick thread per tick
+
+    private static com.sun.management.ThreadMXBean threads; // set on first enable, null if unsupported
+    private static long tickStart;
+    private static long tickAllocStart;
+    private static long paintStart;
+    private static String[] hudLines = new String[0];
+    private static long hudBuiltAt;
+    private static Thread dumper;
+
+    private Telemetry() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setEnabled(boolean on) {
+        if (on && dumper == null) {
+            threads = allocationBean();
+            dumper = new Thread(Telemetry::dumpLoop, "telemetry-dump");
+            dumper.setDaemon(true);
+            dumper.start();
+        }
+        enabled = on;
+    }
+
+    static {
+        if (Boolean.getBoolean("snake.telemetry")) setEnabled(true);
+    }
+
+    // Tick thread: around one whole tick handler.
+    static void beginTick() {
+        tickStart = System.nanoTime();
+        tickAllocStart = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    static void endTick() {
+        if (tickStart == 0) return; // turned on mid-tick
+        TICK.record(System.nanoTime() - tickStart);
+        if (threads != null) {
+            ALLOC.record(threads.getCurrentThreadAllocatedBytes() - tickAllocStart);
+        }
+        tickStart = 0;
+    }
+
+    // EDT: around paintComponent.
+    static void beginPaint() {
+        paintStart = System.nanoTime();
+    }
+
+    static void endPaint() {
+        if (paintStart == 0) return;
+        PAINT.record(System.nanoTime() - paintStart);
+        paintStart = 0;
+    }
+
+    // Tick thread: a key pressed at 'pressedAt' is applied by this tick's move.
+    static void inputApplied(long pressedAt) {
+        INPUT.record(System.nanoTime() - pressedAt);
+    }
+
+    public static void reset() {
+        TICK.reset();
+        PAINT.reset();
+        INPUT.reset();
+        SOUND.reset();
+        ALLOC.reset();
+    }
+
+    // HUD text, rebuilt at most twice a second.
+    static String[] getHudLines() {
+        long now = System.nanoTime();
+        if (now - hudBuiltAt > HUD_REFRESH_NANOS) {
+            hudLines = new String[] {
+                    hudLine("tick", TICK, "us", 1000),
+                    hudLine("paint", PAINT, "us", 1000),
+                    hudLine("input", INPUT, "ms", 1_000_000),
+                    hudLine("sound", SOUND, "ms", 1_000_000),
+                    threads == null ? "alloc  unavailable" : hudLine("alloc", ALLOC, "B", 1),
+            };
+            hudBuiltAt = now;
+        }
+        return hudLines;
+    }
+
+    private static String hudLine(String name, Histogram histogram, String unit, double scale) {
+        return String.format("%-6s p50 %8.1f  p99 %8.1f  max %8.1f %-2s n=%d", name,
+                histogram.getValueAtPercentile(50) / scale, histogram.getValueAtPercentile(99) / scale,
+                histogram.getMax() / scale, unit, histogram.getCount());
+    }
+
+    static String[] summaryLines() {
+        return new String[] {
+                "tick   " + TICK.summary("us", 1000),
+                "paint  " + PAINT.summary("us", 1000),
+                "input  " + INPUT.summary("ms", 1_000_000),
+                "sound  " + SOUND.summary("ms", 1_000_000),
+                "alloc  " + (threads == null ? "unavailable" : ALLOC.summary("B", 1)),
+        };
+    }
+
+    private static void dumpLoop() {
+        while (true) {
+            try {
+                Thread.sleep(DUMP_SECONDS * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (enabled) dump(DUMP_FILE);
+        }
+    }
+
+    public static void dump(String file) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            out.println("# " + LocalDateTime.now());
+            for (String line : summaryLines()) {
+                out.println(line);
+            }
+            out.println("sound  " + SoundEngine.shared().getStats());
+        } catch (IOException e) {
+            System.err.println("Error writing telemetry: " + e.getMessage());
+        }
+    }
+
+    @Name("snake.Move")
+    @Label("Snake Move")
+    @Category("Snake")
+    static final class MoveEvent extends Event {
+        @Label("Body Length")
+        int length;
+    }
+
+    @Name("snake.CheckCollisions")
+    @Label("Snake Collision Check")
+    @Category("Snake")
+    static final class CollisionEvent extends Event {
+        @Label("Collided")
+        boolean collided;
+    }
+
+    @Name("snake.ScorePersist")
+    @Label("Score Batch Write")
+    @Category("Snake")
+    static final class ScorePersistEvent extends Event {
+        @Label("Records")
+        int records;
+        @Label("Bytes")
+        long bytes;
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+// Hashed timing wheel on the game's tick counter. A timer due at tick t lives in slot
+// t & (slots - 1); advance() steps one tick and fires that slot's timers that are due now,
+// leaving those a whole turn or more away for a later pass. Scheduling and cancelling
+// are O(1) and a tick only visits one slot, so any number of power-ups, effects and
+// other timed things cost the same per tick as one.
+//
+// Timers are pooled entries in parallel arrays, linked per slot by index; a timer is
+// its entry index, valid until it fires or is cancelled. Each carries a kind and an int
+// payload (e.g. the cell of the power-up it removes) for the handler.
+public class TimingWheel {
+    public static final int NONE = -1;
+
+    public interface Handler {
+        void expired(int kind, int payload);
+    }
+
+    private final int[] slotHead;
+    private final int mask;
+    private long[] deadline = new long[16];
+    private int[] kind = new int[16];
+    private int[] payload = new int[16];
+    private int[] next = new int[16];
+    private int[] prev = new int[16];
+    private int[] firedKind = new int[8]; // scratch for advance()
+    private int[] firedPayload = new int[8];
+    private int freeHead = NONE; // unused entries, linked through next
+    private int used;           // entries ever handed out; those past it are untouched
+    private int size;
+    private long tick;
+
+    public TimingWheel(int slots) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + slots);
+        }
+        slotHead = new int[slots];
+        mask = slots - 1;
+        Arrays.fill(slotHead, NONE);
+    }
+
+    // Drops every timer and sets the current tick.
+    public void reset(long tick) {
+        Arrays.fill(slotHead, NONE);
+        freeHead = NONE;
+        used = 0;
+        size = 0;
+        this.tick = tick;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Fires 'ticks' ticks from now (at least one); returns the timer.
+    public int schedule(long ticks, int kind, int payload) {
+        return scheduleAt(tick + Math.max(1, ticks), kind, payload);
+    }
+
+    public int scheduleAt(long due, int timerKind, int timerPayload) {
+        int id = allocate();
+        deadline[id] = due;
+        kind[id] = timerKind;
+        payload[id] = timerPayload;
+        int slot = (int) due & mask;
+        prev[id] = NONE;
+        next[id] = slotHead[slot];
+        if (next[id] != NONE) prev[next[id]] = id;
+        slotHead[slot] = id;
+        size++;
+        return id;
+    }
+
+    public void cancel(int id) {
+        if (id == NONE) return;
+        unlink(id);
+    }
+
+    // Moves to the next tick and hands every timer due on it to the handler, which may
+    // schedule or cancel timers. The due timers are taken off the wheel before the first
+    // call, so a handler never sees the slot mid-update.
+    public void advance(Handler handler) {
+        tick++;
+        int count = 0;
+        int id = slotHead[(int) tick & mask];
+        while (id != NONE) {
+            int following = next[id];
+            if (deadline[id] == tick) {
+                if (count == firedKind.length) {
+                    firedKind = Arrays.copyOf(firedKind, count * 2);
+                    firedPayload = Arrays.copyOf(firedPayload, count * 2);
+                }
+                firedKind[count] = kind[id];
+                firedPayload[count] = payload[id];
+                count++;
+                unlink(id);
+            }
+            id = following;
+        }
+        for (int i = 0; i < count; i++) {
+            handler.expired(firedKind[i], firedPayload[i]);
+        }
+    }
+
+    // The pending timer of the given kind and payload, or NONE; a full scan, for restoring.
+    public int find(int timerKind, int timerPayload) {
+        for (int head : slotHead) {
+            for (int id = head; id != NONE; id = next[id]) {
+                if (kind[id] == timerKind && payload[id] == timerPayload) return id;
+            }
+        }
+        return NONE;
+    }
+
+    // Pending timers as (deadline, kind << 32 | payload) pairs, for saving.
+    public long[] export() {
+        long[] timers = new long[2 * size];
+        int n = 0;
+        for (int head : slotHead) {
+            for (int id = head; id != NONE; id = next[id]) {
+                timers[n++] = deadline[id];
+                timers[n++] = (long) kind[id] << 32 | (payload[id] & 0xffffffffL);
+            }
+        }
+        return timers;
+    }
+
+    // Replaces all timers with exported ones, at the given current tick. Inserting in
+    // reverse rebuilds each slot in its exported order, so timers due together fire in
+    // the same order as before the save.
+    public void restore(long tick, long[] timers) {
+        reset(tick);
+        for (int i = timers.length - 2; i >= 0; i -= 2) {
+            scheduleAt(timers[i], (int) (timers[i + 1] >> 32), (int) timers[i + 1]);
+        }
+    }
+
+    private int allocate() {
+        if (freeHead != NONE) {
+            int id = freeHead;
+            freeHead = next[id];
+            return id;
+        }
+        if (used == deadline.length) {
+            int capacity = used * 2;
+            deadline = Arrays.copyOf(deadline, capacity);
+            kind = Arrays.copyOf(kind, capacity);
+            payload = Arrays.copyOf(payload, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+        return used++;
+    }
+
+    private void unlink(int id) {
+        if (deadline[id] == Long.MIN_VALUE) return; // already cancelled
+        int slot = (int) deadline[id] & mask;
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            slotHead[slot] = next[id];
+        }
+        if (next[id] != NONE) prev[next[id]] = prev[id];
+        deadline[id] = Long.MIN_VALUE;
+        next[id] = freeHead;
+        freeHead = id;
+        size--;
+    }
+}